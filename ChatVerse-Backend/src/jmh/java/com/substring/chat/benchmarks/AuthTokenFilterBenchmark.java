@@ -0,0 +1,75 @@
+package com.substring.chat.benchmarks;
+
+import com.substring.chat.security.AuthPrincipalCache;
+import com.substring.chat.security.AuthTokenFilter;
+import com.substring.chat.security.JwtUtils;
+import com.substring.chat.security.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AuthTokenFilter end to end for a bearer request: header parsing, principal
+ * cache, JWT parse and user lookup on a miss, security context set-up. The
+ * user lookup is an in-memory stub, so "miss" shows the cost without Mongo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuthTokenFilterBenchmark {
+
+    @Param({"hit", "miss"})
+    public String cache;
+
+    private AuthTokenFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        JwtUtils jwtUtils = JwtUtilsBenchmark.newJwtUtils();
+        authorization = "Bearer " + JwtUtilsBenchmark.token(jwtUtils, "user@example.com");
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // a zero-sized cache evicts on every put, so every request is a miss
+        AuthPrincipalCache principalCache = new AuthPrincipalCache("hit".equals(cache) ? 10_000 : 0,
+                300_000, meterRegistry);
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl() {
+            @Override
+            public UserDetails loadUserByUsername(String email) {
+                return User.builder().username(email).password("").authorities(List.of()).build();
+            }
+        };
+
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "principalCache", principalCache);
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+    }
+
+    @Benchmark
+    public Object bearerRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/rooms");
+        request.addHeader("Authorization", authorization);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+}
@@ -0,0 +1,114 @@
+package com.substring.chat.benchmarks;
+
+import com.substring.chat.services.RoomExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A burst of inbound STOMP messages spread over a few rooms, dispatched through
+ * an ExecutorSubscribableChannel like clientInboundChannel. Each handler blocks
+ * for blockMs (a Mongo round trip) and then hands the room's work to its
+ * RoomExecutor lane, as ChatController does. "platform" is Spring's
+ * default pool of two threads per core, "virtual" one virtual thread per
+ * message; SampleTime gives the tail latency of a whole burst. The virtual mode needs Java 21+, on older JDKs its
+ * setup fails and JMH moves on to the platform runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutionModeBenchmark {
+
+    private static final int ROOMS = 16;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"0", "5"})
+    public int blockMs;
+
+    @Param({"1000"})
+    public int burst;
+
+    private ThreadPoolTaskExecutor pool;
+    private ExecutorSubscribableChannel channel;
+    private RoomExecutor roomExecutor;
+    private final AtomicLong[] nextSeq = new AtomicLong[ROOMS];
+    private volatile CountDownLatch done;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("virtual".equals(mode)) {
+            if (Runtime.version().feature() < 21) {
+                throw new IllegalStateException("virtual mode needs Java 21+, running " + Runtime.version());
+            }
+            channel = new ExecutorSubscribableChannel(new VirtualThreadTaskExecutor("bench-inbound-"));
+        } else {
+            pool = new ThreadPoolTaskExecutor();
+            pool.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+            pool.setThreadNamePrefix("bench-inbound-");
+            pool.initialize();
+            channel = new ExecutorSubscribableChannel(pool);
+        }
+        // lanes follow the same mode through spring.threads.virtual.enabled
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.threads.virtual.enabled", String.valueOf("virtual".equals(mode)));
+        roomExecutor = new RoomExecutor(0, burst, 1000, burst, environment, new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(roomExecutor, "start");
+        for (int i = 0; i < ROOMS; i++) {
+            nextSeq[i] = new AtomicLong();
+        }
+        channel.subscribe(message -> {
+            int room = (Integer) message.getPayload();
+            if (blockMs > 0) {
+                try {
+                    Thread.sleep(blockMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            roomExecutor.submit("room-" + room, () -> {
+                nextSeq[room].incrementAndGet();
+                done.countDown();
+            });
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(roomExecutor, "stop");
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void inboundBurst() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(burst);
+        done = latch;
+        for (int i = 0; i < burst; i++) {
+            channel.send(MessageBuilder.withPayload(i % ROOMS).build());
+        }
+        if (!latch.await(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("burst did not complete");
+        }
+    }
+}
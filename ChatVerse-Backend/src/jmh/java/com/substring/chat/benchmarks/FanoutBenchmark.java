@@ -0,0 +1,102 @@
+package com.substring.chat.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.substring.chat.entities.Message;
+import com.substring.chat.services.RoomBroadcaster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One room broadcast through SimpMessagingTemplate and the simple broker to N
+ * subscribed sessions, each encoded to a STOMP frame as the WebSocket handler
+ * would. Channels are synchronous so the measured time covers the whole fanout.
+ * "entity" converts the Message entity per send, "lean" goes through RoomBroadcaster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FanoutBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int sessions;
+
+    @Param({"entity", "lean"})
+    public String payload;
+
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate template;
+    private RoomBroadcaster broadcaster;
+    private Message message;
+    private long framedBytes;
+
+    @Setup
+    public void setUp() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        StompEncoder encoder = new StompEncoder();
+        clientOutbound.subscribe(out -> {
+            StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            frame.setSubscriptionId(SimpMessageHeaderAccessor.getSubscriptionId(out.getHeaders()));
+            frame.setDestination(SimpMessageHeaderAccessor.getDestination(out.getHeaders()));
+            frame.setMessageId(String.valueOf(framedBytes));
+            frame.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            framedBytes += encoder.encode(frame.getMessageHeaders(), (byte[]) out.getPayload()).length;
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+        for (int i = 0; i < sessions; i++) {
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("session-" + i);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(RoomBroadcaster.ROOM_TOPIC + Fixtures.ROOM_ID);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        ObjectMapper objectMapper = Fixtures.objectMapper();
+        template = new SimpMessagingTemplate(brokerChannel);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        template.setMessageConverter(converter);
+        broadcaster = new RoomBroadcaster(template, objectMapper, new SimpleMeterRegistry());
+        message = Fixtures.textMessage(1);
+    }
+
+    @Benchmark
+    public long broadcast() {
+        if ("lean".equals(payload)) {
+            broadcaster.broadcast(message);
+        } else {
+            template.convertAndSend(RoomBroadcaster.ROOM_TOPIC + Fixtures.ROOM_ID, message);
+        }
+        return framedBytes;
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+}
@@ -0,0 +1,50 @@
+package com.substring.chat.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.substring.chat.entities.Message;
+import org.bson.types.ObjectId;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// Shared inputs so every suite measures the same kind of traffic
+final class Fixtures {
+
+    static final String ROOM_ID = "bench-room";
+
+    private Fixtures() {
+    }
+
+    // Configured like Boot's auto-configured mapper (JavaTimeModule, ISO dates)
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static Message textMessage(int i) {
+        Message m = new Message("user" + (i % 50) + "@example.com", "message number " + i + " in the benchmark room");
+        m.setId(new ObjectId().toHexString());
+        m.setRoomId(ROOM_ID);
+        m.setTimeStamp(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        return m;
+    }
+
+    // Mostly text, every tenth message an image attachment
+    static List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Message m = textMessage(i);
+            if (i % 10 == 0) {
+                String hash = "ab".repeat(32);
+                m.setFileUrl("/uploads/blobs/ab/" + hash + ".png");
+                m.setFileName("photo.png");
+                m.setFileType("image/png");
+                m.setThumbnailUrl("/uploads/thumbs/ab/" + hash + ".jpg");
+            }
+            messages.add(m);
+        }
+        return messages;
+    }
+}
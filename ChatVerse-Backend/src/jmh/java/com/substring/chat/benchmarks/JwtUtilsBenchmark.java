@@ -0,0 +1,64 @@
+package com.substring.chat.benchmarks;
+
+import com.substring.chat.security.JwtUtils;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Token validation as done on every authenticated request without a cache hit
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JwtUtilsBenchmark {
+
+    private JwtUtils jwtUtils;
+    private String validToken;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = newJwtUtils();
+        validToken = token(jwtUtils, "user@example.com");
+        // same shape, broken signature: exercises the rejection path
+        tamperedToken = validToken.substring(0, validToken.length() - 2) + "xx";
+    }
+
+    static JwtUtils newJwtUtils() {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "chatVerseSecretKey12345678901234567890123456789012");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86_400_000);
+        ReflectionTestUtils.invokeMethod(jwtUtils, "init");
+        return jwtUtils;
+    }
+
+    static String token(JwtUtils jwtUtils, String email) {
+        User principal = new User(email, "", List.of());
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @Benchmark
+    public Claims parseValid() {
+        return jwtUtils.parseValidClaims(validToken);
+    }
+
+    @Benchmark
+    public Claims parseTampered() {
+        return jwtUtils.parseValidClaims(tamperedToken);
+    }
+
+    @Benchmark
+    public String generate() {
+        return token(jwtUtils, "user@example.com");
+    }
+}
@@ -0,0 +1,94 @@
+package com.substring.chat.benchmarks;
+
+import com.substring.chat.entities.Message;
+import com.substring.chat.kafka.MessageDeserializer;
+import com.substring.chat.kafka.MessageSerializer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * chat-messages value codecs: the binary codec against the JSON serializer
+ * it replaced. The encodedBytes/records counters give bytes per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KafkaSerializerBenchmark {
+
+    private static final String TOPIC = "chat-messages";
+    private static final int SAMPLES = 1_000;
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private Serializer<? super Message> serializer;
+    private Deserializer<Message> deserializer;
+    private List<Message> messages;
+    private List<byte[]> encoded;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int advance() {
+            next = next + 1 == SAMPLES ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        public long encodedBytes;
+        public long records;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            encodedBytes = 0;
+            records = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        if ("json".equals(codec)) {
+            serializer = new JsonSerializer<Message>();
+            deserializer = new JsonDeserializer<>(Message.class, false);
+        } else {
+            serializer = new MessageSerializer();
+            deserializer = new MessageDeserializer();
+        }
+        messages = Fixtures.messages(SAMPLES);
+        encoded = new ArrayList<>(SAMPLES);
+        messages.forEach(m -> encoded.add(serializer.serialize(TOPIC, m)));
+    }
+
+    @Benchmark
+    public byte[] serialize(Cursor cursor, Size size) {
+        byte[] data = serializer.serialize(TOPIC, messages.get(cursor.advance()));
+        size.encodedBytes += data.length;
+        size.records++;
+        return data;
+    }
+
+    @Benchmark
+    public Message deserialize(Cursor cursor) {
+        return deserializer.deserialize(TOPIC, encoded.get(cursor.advance()));
+    }
+}
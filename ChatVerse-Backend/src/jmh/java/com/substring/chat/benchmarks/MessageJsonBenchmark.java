@@ -0,0 +1,56 @@
+package com.substring.chat.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.substring.chat.entities.Message;
+import com.substring.chat.payload.MessageRequest;
+import com.substring.chat.payload.OutboundMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON cost of a chat message: the full entity (REST history), the lean
+ * broadcast form, and reading an inbound send request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Message message;
+    private byte[] requestJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Fixtures.objectMapper();
+        message = Fixtures.messages(1).get(0);
+        MessageRequest request = new MessageRequest();
+        request.setContent(message.getContent());
+        request.setSender(message.getSender());
+        request.setRoomId(Fixtures.ROOM_ID);
+        request.setClientMessageId("c-1");
+        requestJson = objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public byte[] serializeEntity() throws Exception {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serializeOutbound() throws Exception {
+        return objectMapper.writeValueAsBytes(OutboundMessage.from(message));
+    }
+
+    @Benchmark
+    public MessageRequest deserializeRequest() throws Exception {
+        return objectMapper.readValue(requestJson, MessageRequest.class);
+    }
+}
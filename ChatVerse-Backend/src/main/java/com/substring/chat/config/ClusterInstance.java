@@ -0,0 +1,61 @@
+package com.substring.chat.config;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Identity of this backend instance and how it takes part in the Kafka chat stream.
+ * Shared mode: all instances form one consumer group, each record reaches one of them.
+ * Fanout mode: every instance has its own group and sees every record, filtered
+ * locally by room interest. Room events always use a per-instance group. Those
+ * groups are named after the instance id, which must survive restarts or every
+ * restart leaves a group behind on the broker: chat.app.instanceId, else the
+ * host name (the pod name on Kubernetes). Startup fails if neither is available.
+ */
+@Component
+@Getter
+public class ClusterInstance {
+
+    private static final String SHARED_GROUP = "chat-group";
+
+    private final String instanceId;
+    private final boolean fanout;
+
+    public ClusterInstance(@Value("${chat.app.instanceId:}") String instanceId,
+            @Value("${chat.app.kafka.fanout:false}") boolean fanout) {
+        this.fanout = fanout;
+        this.instanceId = instanceId.isBlank() ? hostName() : instanceId;
+    }
+
+    private static String hostName() {
+        String name = System.getenv("HOSTNAME");
+        if (name == null || name.isBlank()) {
+            try {
+                name = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                name = null;
+            }
+        }
+        if (name == null || name.isBlank()) {
+            throw new IllegalStateException("No host name, set a stable chat.app.instanceId (INSTANCE_ID)");
+        }
+        return name;
+    }
+
+    public String getConsumerGroup() {
+        return fanout ? SHARED_GROUP + "-" + instanceId : SHARED_GROUP;
+    }
+
+    // A fresh per-instance group must not replay the topic from the beginning
+    public String getOffsetReset() {
+        return fanout ? "latest" : "earliest";
+    }
+
+    public String getRoomEventsGroup() {
+        return "room-events-" + instanceId;
+    }
+}
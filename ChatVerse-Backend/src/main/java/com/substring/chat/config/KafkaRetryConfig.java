@@ -2,6 +2,8 @@ package com.substring.chat.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.util.backoff.FixedBackOff;
 
@@ -12,10 +14,13 @@ public class KafkaRetryConfig {
      * Enterprise Retry Mechanism:
      * If a consumer fails (e.g., DB down), it retries 3 times with 2-second
      * intervals
-     * before sending the message to a Dead Letter Topic (optional) or logging it.
+     * before sending the message to the Dead Letter Topic (chat-messages.DLT).
+     * Batch listeners: a BatchListenerFailedException retries from the failing
+     * record and dead-letters only that one; any other exception retries the
+     * whole batch and then dead-letters every record in it.
      */
     @Bean
-    public DefaultErrorHandler errorHandler() {
-        return new DefaultErrorHandler(new FixedBackOff(2000L, 3));
+    public DefaultErrorHandler errorHandler(KafkaOperations<?, ?> kafkaTemplate) {
+        return new DefaultErrorHandler(new DeadLetterPublishingRecoverer(kafkaTemplate), new FixedBackOff(2000L, 3));
     }
 }
@@ -0,0 +1,47 @@
+package com.substring.chat.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.concurrent.Executor;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * WebSocket session counts by transport and the depth of the STOMP inbound /
+     * outbound channel queues, i.e. work waiting for a thread. Virtual-thread
+     * executors have no queue, so the gauges only exist for platform pools.
+     */
+    @Bean
+    public MeterBinder webSocketMetrics(
+            @Qualifier("subProtocolWebSocketHandler") WebSocketHandler webSocketHandler,
+            @Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+            @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor) {
+        return registry -> {
+            if (webSocketHandler instanceof SubProtocolWebSocketHandler handler) {
+                SubProtocolWebSocketHandler.Stats stats = handler.getStats();
+                Gauge.builder("chat.ws.sessions", stats, SubProtocolWebSocketHandler.Stats::getWebSocketSessions)
+                        .tag("transport", "websocket").register(registry);
+                Gauge.builder("chat.ws.sessions", stats, SubProtocolWebSocketHandler.Stats::getHttpStreamingSessions)
+                        .tag("transport", "streaming").register(registry);
+                Gauge.builder("chat.ws.sessions", stats, SubProtocolWebSocketHandler.Stats::getHttpPollingSessions)
+                        .tag("transport", "polling").register(registry);
+            }
+            if (inboundExecutor instanceof ThreadPoolTaskExecutor pool) {
+                Gauge.builder("chat.ws.channel.queue", pool, e -> e.getThreadPoolExecutor().getQueue().size())
+                        .tag("channel", "inbound").register(registry);
+            }
+            if (outboundExecutor instanceof ThreadPoolTaskExecutor pool) {
+                Gauge.builder("chat.ws.channel.queue", pool, e -> e.getThreadPoolExecutor().getQueue().size())
+                        .tag("channel", "outbound").register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.substring.chat.config;
+
+import com.substring.chat.entities.Message;
+import com.substring.chat.entities.ReadWatermark;
+import com.substring.chat.entities.Room;
+import com.substring.chat.entities.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Component
+@Slf4j
+public class MongoIndexConfig {
+
+    // Entities whose @Indexed / @CompoundIndex declarations must exist in Mongo
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(Message.class, ReadWatermark.class, Room.class, User.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+
+    public MongoIndexConfig(MongoTemplate mongoTemplate, MongoMappingContext mappingContext) {
+        this.mongoTemplate = mongoTemplate;
+        this.mappingContext = mappingContext;
+    }
+
+    /**
+     * Ensures declared indexes once the app is up. Runs off the main thread so a
+     * slow or unreachable Mongo never blocks startup; createIndex is a no-op for an
+     * index that already exists with the same definition.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        CompletableFuture.runAsync(() -> {
+            IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+            for (Class<?> entity : INDEXED_ENTITIES) {
+                try {
+                    IndexOperations indexOps = mongoTemplate.indexOps(entity);
+                    resolver.resolveIndexFor(entity).forEach(indexOps::createIndex);
+                    log.info("Ensured indexes for {}", entity.getSimpleName());
+                } catch (Exception e) {
+                    log.error("Index creation failed for {}: {}", entity.getSimpleName(), e.getMessage());
+                }
+            }
+        });
+    }
+}
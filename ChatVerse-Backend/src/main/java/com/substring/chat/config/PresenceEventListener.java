@@ -1,33 +1,21 @@
 package com.substring.chat.config;
 
-import com.substring.chat.entities.User;
-import com.substring.chat.repositories.UserRepository;
+import com.substring.chat.services.PresenceService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
-import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 @Component
 @Slf4j
 public class PresenceEventListener {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    private final UserRepository userRepository;
-
-    // Map session ID to username for quick lookup on disconnect
-    private final Map<String, String> sessionUserMap = new ConcurrentHashMap<>();
+    private final PresenceService presenceService;
 
-    public PresenceEventListener(SimpMessagingTemplate messagingTemplate, UserRepository userRepository) {
-        this.messagingTemplate = messagingTemplate;
-        this.userRepository = userRepository;
+    public PresenceEventListener(PresenceService presenceService) {
+        this.presenceService = presenceService;
     }
 
     @EventListener
@@ -37,35 +25,17 @@ public class PresenceEventListener {
         String sessionId = headerAccessor.getSessionId();
 
         if (username != null && sessionId != null) {
-            log.info("User connected: {} (Session: {})", username, sessionId);
-            sessionUserMap.put(sessionId, username);
-            updateUserPresence(username, true);
+            log.debug("User connected: {} (Session: {})", username, sessionId);
+            presenceService.connected(sessionId, username);
         }
     }
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        String sessionId = headerAccessor.getSessionId();
-
-        if (sessionId != null && sessionUserMap.containsKey(sessionId)) {
-            String username = sessionUserMap.remove(sessionId);
-            log.info("User disconnected: {} (Session: {})", username, sessionId);
-            updateUserPresence(username, false);
+        String sessionId = event.getSessionId();
+        if (sessionId != null) {
+            log.debug("Session disconnected: {}", sessionId);
+            presenceService.disconnected(sessionId);
         }
     }
-
-    private void updateUserPresence(String username, boolean online) {
-        userRepository.findByEmail(username).ifPresent(user -> {
-            user.setOnline(online);
-            user.setLastSeen(LocalDateTime.now());
-            userRepository.save(user);
-
-            // Broadcast presence update to everyone
-            messagingTemplate.convertAndSend("/topic/presence", Map.of(
-                    "email", username,
-                    "online", online,
-                    "lastSeen", user.getLastSeen()));
-        });
-    }
 }
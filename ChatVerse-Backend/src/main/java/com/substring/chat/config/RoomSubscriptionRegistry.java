@@ -0,0 +1,157 @@
+package com.substring.chat.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live index of which rooms have STOMP subscribers on this instance, kept from
+ * subscribe / unsubscribe / disconnect events. Used to skip work for rooms
+ * nobody here is listening to. Active rooms also get a chat.room.subscribers
+ * gauge, registered and removed with the room, up to maxRoomGauges live ones
+ * at a time; a slot freed by a room going idle goes to an active room still
+ * without one. chat.rooms.active counts all of them.
+ */
+@Component
+@Slf4j
+public class RoomSubscriptionRegistry {
+
+    private static final String ROOM_PREFIX = "/topic/room/";
+
+    // sessionId -> (subscriptionId -> roomId)
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+    // roomId -> number of local subscriptions
+    private final Map<String, Integer> roomSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> roomGauges = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final int maxRoomGauges;
+
+    public RoomSubscriptionRegistry(MeterRegistry meterRegistry,
+            @Value("${chat.app.metrics.maxRoomGauges:500}") int maxRoomGauges) {
+        this.meterRegistry = meterRegistry;
+        this.maxRoomGauges = maxRoomGauges;
+        meterRegistry.gauge("chat.rooms.active", roomSubscribers, Map::size);
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        String roomId = roomOf(headerAccessor.getDestination());
+        String sessionId = headerAccessor.getSessionId();
+        String subscriptionId = headerAccessor.getSubscriptionId();
+        if (roomId == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+        String previous = sessionSubscriptions.computeIfAbsent(sessionId, s -> new ConcurrentHashMap<>())
+                .put(subscriptionId, roomId);
+        if (previous == null) {
+            // gauge changes happen inside the per-key update, so they cannot interleave for one room
+            roomSubscribers.compute(roomId, (id, count) -> {
+                if (count == null) {
+                    registerGauge(id);
+                    return 1;
+                }
+                return count + 1;
+            });
+        }
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessionSubscriptions.get(headerAccessor.getSessionId());
+        if (subscriptions != null && headerAccessor.getSubscriptionId() != null) {
+            release(subscriptions.remove(headerAccessor.getSubscriptionId()));
+        }
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    public boolean hasLocalSubscribers(String roomId) {
+        return roomId != null && roomSubscribers.containsKey(roomId);
+    }
+
+    public int getSubscriberCount(String roomId) {
+        return roomSubscribers.getOrDefault(roomId, 0);
+    }
+
+    public Set<String> getActiveRooms() {
+        return roomSubscribers.keySet();
+    }
+
+    private void release(String roomId) {
+        if (roomId == null) {
+            return;
+        }
+        boolean[] freed = new boolean[1];
+        // drop the entry at zero so the key set stays the set of interested rooms
+        roomSubscribers.computeIfPresent(roomId, (id, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            Gauge gauge = roomGauges.remove(id);
+            if (gauge != null) {
+                meterRegistry.remove(gauge);
+                freed[0] = true;
+            }
+            return null;
+        });
+        if (freed[0]) {
+            fillFreedSlot();
+        }
+    }
+
+    // Called inside the room's compute; the limit is approximate when rooms start concurrently
+    private void registerGauge(String roomId) {
+        if (roomGauges.size() >= maxRoomGauges) {
+            return;
+        }
+        roomGauges.put(roomId, Gauge.builder("chat.room.subscribers", this, r -> r.getSubscriberCount(roomId))
+                .tag("roomId", roomId)
+                .register(meterRegistry));
+    }
+
+    private void fillFreedSlot() {
+        for (String roomId : roomSubscribers.keySet()) {
+            if (roomGauges.size() >= maxRoomGauges) {
+                return;
+            }
+            if (!roomGauges.containsKey(roomId)) {
+                // under the room's own key, so it cannot race the room going idle
+                roomSubscribers.computeIfPresent(roomId, (id, count) -> {
+                    if (!roomGauges.containsKey(id)) {
+                        registerGauge(id);
+                    }
+                    return count;
+                });
+                return;
+            }
+        }
+    }
+
+    // Only the room message stream itself counts as interest, not /typing, /status, ...
+    private String roomOf(String destination) {
+        if (destination == null || !destination.startsWith(ROOM_PREFIX)) {
+            return null;
+        }
+        String roomId = destination.substring(ROOM_PREFIX.length());
+        return roomId.isEmpty() || roomId.contains("/") ? null : roomId;
+    }
+}
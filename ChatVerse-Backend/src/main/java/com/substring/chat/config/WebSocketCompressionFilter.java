@@ -0,0 +1,42 @@
+package com.substring.chat.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * Tomcat negotiates permessage-deflate whenever the browser offers it, which
+ * costs a deflate per frame per session. Unless chat.app.ws.compression is on,
+ * this hides the offer on /chat handshakes so frames go out uncompressed.
+ */
+public class WebSocketCompressionFilter extends OncePerRequestFilter {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getHeader(EXTENSIONS_HEADER) == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        chain.doFilter(new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+            }
+        }, response);
+    }
+}
@@ -1,23 +1,61 @@
 package com.substring.chat.config;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * STOMP over /chat. The client channels run on platform-thread pools by default;
+ * with spring.threads.virtual.enabled on Java 21+ every inbound and outbound
+ * message gets its own virtual thread, so handlers blocked on Mongo no longer
+ * hold a pool thread. Boot switches Tomcat, the Kafka listener containers and
+ * the task executors over with the same flag.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
+@Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Value("${app.frontend.url}")
     private String frontendUrl;
 
+    @Value("${chat.app.ws.compression:false}")
+    private boolean compression;
+
+    // 0 keeps Spring's default of two threads per core
+    @Value("${chat.app.ws.inboundPoolSize:0}")
+    private int inboundPoolSize;
+
+    @Value("${chat.app.ws.outboundPoolSize:0}")
+    private int outboundPoolSize;
+
+    private final boolean virtualThreads;
+
+    public WebSocketConfig(Environment environment) {
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+        if (!virtualThreads && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("Virtual threads requested but Java {} has none; STOMP channels stay on platform pools",
+                    Runtime.version().feature());
+        }
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
+        // frames to one session leave in the order they were published
+        config.setPreservePublishOrder(true);
     }
 
     @Override
@@ -25,5 +63,35 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/chat")
                 .setAllowedOrigins(frontendUrl, "chat-versa-zm6p.vercel.app")
                 .withSockJS();
+        // frames from one session are handled one after another, whatever the executor
+        registry.setPreserveReceiveOrder(true);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, "chat-inbound-", inboundPoolSize);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, "chat-outbound-", outboundPoolSize);
+    }
+
+    private void configureExecutor(ChannelRegistration registration, String threadPrefix, int poolSize) {
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor(threadPrefix));
+        } else if (poolSize > 0) {
+            registration.taskExecutor().corePoolSize(poolSize);
+        }
+    }
+
+    // permessage-deflate on /chat is opt-in: deflating each frame per session costs CPU in large rooms
+    @Bean
+    public FilterRegistrationBean<WebSocketCompressionFilter> webSocketCompressionFilter() {
+        FilterRegistrationBean<WebSocketCompressionFilter> registration =
+                new FilterRegistrationBean<>(new WebSocketCompressionFilter());
+        registration.addUrlPatterns("/chat/*");
+        registration.setEnabled(!compression);
+        return registration;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+package com.substring.chat.controllers;
+
+import com.substring.chat.services.FileStorageService;
+import com.substring.chat.services.ThumbnailService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serves content-addressed blobs. The name is the content hash, so responses
+ * are immutable: strong ETag = hash, one-year cache, 304 on If-None-Match.
+ * Single byte ranges are honoured for media seeking. The body goes out via
+ * Tomcat sendfile when the connector supports it, else FileChannel.transferTo.
+ */
+@RestController
+@CrossOrigin("*")
+public class AttachmentController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private final FileStorageService fileStorageService;
+    private final MeterRegistry meterRegistry;
+
+    public AttachmentController(FileStorageService fileStorageService, MeterRegistry meterRegistry) {
+        this.fileStorageService = fileStorageService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @RequestMapping(value = "/uploads/blobs/{shard:[0-9a-f]{2}}/{name:[0-9a-f]{64}(?:\\.[a-z0-9]{1,10})?}",
+            method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveBlob(@PathVariable String shard, @PathVariable String name,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = serve("blobs", shard, name, request, response);
+        sample.stop(meterRegistry.timer("chat.files.serve", "outcome", outcome));
+    }
+
+    // previews are derived from the blob hash, so they are just as immutable
+    @RequestMapping(value = "/uploads/" + ThumbnailService.THUMB_DIR + "/{shard:[0-9a-f]{2}}/{name:[0-9a-f]{64}\\.jpg}",
+            method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveThumbnail(@PathVariable String shard, @PathVariable String name,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = serve(ThumbnailService.THUMB_DIR, shard, name, request, response);
+        sample.stop(meterRegistry.timer("chat.files.serve", "outcome", outcome));
+    }
+
+    private String serve(String dir, String shard, String name, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        String hash = name.substring(0, 64);
+        Path file = fileStorageService.getRoot().resolve(dir).resolve(shard).resolve(name);
+        if (!hash.startsWith(shard) || !Files.isRegularFile(file)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return "not_found";
+        }
+
+        String etag = "\"" + hash + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return "not_modified";
+        }
+
+        long size = Files.size(file);
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        boolean partial = range != null && (ifRange == null || ifRange.equals(etag));
+        if (partial) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                partial = false; // multi-range or invalid: send the whole file
+            } else if (bounds.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return "unsatisfiable";
+            } else {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(name)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod())) {
+            return "head";
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat streams the file with sendfile once the handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                while (position <= end) {
+                    position += in.transferTo(position, end + 1 - position, out);
+                }
+            }
+        }
+        meterRegistry.counter("chat.files.served.bytes", "partial", String.valueOf(partial)).increment(length);
+        return partial ? "partial" : "full";
+    }
+
+    private boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Single "bytes=" range to inclusive {start, end}; empty array when it is
+     * valid but cannot be satisfied, null when it should be ignored (multi-range
+     * or invalid, e.g. bytes=5-3), which RFC 9110 answers with the full body.
+     */
+    private long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        if ((first.isEmpty() && last.isEmpty()) || !isDigits(first) || !isDigits(last)) {
+            return null;
+        }
+        try {
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last); // last N bytes
+                return suffix == 0 || size == 0 ? new long[0] : new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            if (!last.isEmpty() && Long.parseLong(last) < start) {
+                return null;
+            }
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            return start >= size ? new long[0] : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null; // more digits than a long holds
+        }
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -6,7 +6,9 @@ import com.substring.chat.payload.LoginRequest;
 import com.substring.chat.payload.RegisterRequest;
 import com.substring.chat.repositories.UserRepository;
 import com.substring.chat.security.JwtUtils;
+import com.substring.chat.services.DirectoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,6 +17,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -32,6 +35,9 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    DirectoryService directoryService;
+
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest) {
 
@@ -70,8 +76,20 @@ public class AuthController {
         return ResponseEntity.ok("User registered successfully!");
     }
 
+    // paged, prefix search on email or name; password hashes are never read
     @GetMapping("/users")
-    public ResponseEntity<?> getAllUsers() {
-        return ResponseEntity.ok(userRepository.findAll());
+    public ResponseEntity<?> getAllUsers(
+            @RequestParam(value = "q", required = false) String prefix,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "50") int size) {
+        return ResponseEntity.ok(directoryService.users(prefix, page, size));
+    }
+
+    // full directory as NDJSON, streamed from a cursor
+    @GetMapping(value = "/users/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(directoryService::exportUsers);
     }
 }
@@ -4,11 +4,22 @@ import com.substring.chat.config.AppConstants;
 import com.substring.chat.entities.Message;
 import com.substring.chat.kafka.KafkaProducer;
 import com.substring.chat.payload.MessageRequest;
-import com.substring.chat.repositories.MessageRepository;
+import com.substring.chat.services.MessageDeduplicator;
+import com.substring.chat.services.MessagePersistenceService;
+import com.substring.chat.services.ReadReceiptService;
+import com.substring.chat.services.RecentMessageBuffer;
+import com.substring.chat.services.RoomBroadcaster;
+import com.substring.chat.services.RoomExecutor;
+import com.substring.chat.services.RoomSequenceService;
+import com.substring.chat.services.ThumbnailService;
+import com.substring.chat.services.TypingIndicatorService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -22,19 +33,56 @@ import java.util.Map;
 public class ChatController {
 
     private final KafkaProducer kafkaProducer;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final MessageRepository messageRepository;
+    private final RoomBroadcaster broadcaster;
+    private final MessagePersistenceService persistenceService;
+    private final MessageDeduplicator deduplicator;
+    private final ReadReceiptService readReceiptService;
+    private final TypingIndicatorService typingIndicatorService;
+    private final ThumbnailService thumbnailService;
+    private final RoomExecutor roomExecutor;
+    private final RoomSequenceService sequenceService;
+    private final RecentMessageBuffer recentBuffer;
+    private final Timer ingestTimer;
 
-    public ChatController(KafkaProducer kafkaProducer, SimpMessagingTemplate messagingTemplate,
-            MessageRepository messageRepository) {
+    public ChatController(KafkaProducer kafkaProducer, RoomBroadcaster broadcaster,
+            MessagePersistenceService persistenceService, MessageDeduplicator deduplicator,
+            ReadReceiptService readReceiptService, TypingIndicatorService typingIndicatorService,
+            ThumbnailService thumbnailService, RoomExecutor roomExecutor,
+            RoomSequenceService sequenceService, RecentMessageBuffer recentBuffer, MeterRegistry meterRegistry) {
         this.kafkaProducer = kafkaProducer;
-        this.messagingTemplate = messagingTemplate;
-        this.messageRepository = messageRepository;
+        this.broadcaster = broadcaster;
+        this.persistenceService = persistenceService;
+        this.deduplicator = deduplicator;
+        this.readReceiptService = readReceiptService;
+        this.typingIndicatorService = typingIndicatorService;
+        this.thumbnailService = thumbnailService;
+        this.roomExecutor = roomExecutor;
+        this.sequenceService = sequenceService;
+        this.recentBuffer = recentBuffer;
+        // receipt of the STOMP frame until the broadcast is handed to the broker
+        this.ingestTimer = meterRegistry.timer("chat.messages.ingest");
     }
 
     @MessageMapping("/sendMessage/{roomId}")
-    public void sendMessage(@DestinationVariable String roomId, @RequestBody MessageRequest request) {
+    public void sendMessage(@DestinationVariable String roomId, @RequestBody MessageRequest request,
+            @Header("simpSessionId") String sessionId) {
+        Timer.Sample sample = Timer.start();
+        // Frames for one room can arrive on several inbound threads at once; the room's
+        // lane runs them one by one, so id, broadcast, persistence and Kafka order agree
+        if (!roomExecutor.submit(roomId, () -> ingest(roomId, request, sessionId, sample))) {
+            // lane full or shutting down: the message went nowhere, let the sender retry
+            persistenceService.ackRejected(sessionId, request.getClientMessageId());
+        }
+    }
+
+    private void ingest(String roomId, MessageRequest request, String sessionId, Timer.Sample sample) {
         Message message = new Message();
+        // Stable id assigned at ingest: the message is broadcast before it is persisted,
+        // and the Kafka copy of it must be recognised as the same message
+        message.setId(new ObjectId().toHexString());
+        deduplicator.markSeen(message.getId());
+        // runs on the room's lane, so numbers follow the order messages are handled in
+        message.setSeq(sequenceService.next(roomId));
         message.setContent(request.getContent());
         message.setSender(request.getSender());
         message.setTimeStamp(LocalDateTime.now());
@@ -42,40 +90,45 @@ public class ChatController {
         message.setFileUrl(request.getFileUrl());
         message.setFileName(request.getFileName());
         message.setFileType(request.getFileType());
+        // subscribers get the preview; the original is only fetched when opened
+        message.setThumbnailUrl(thumbnailService.thumbnailUrlFor(request.getFileUrl()));
         message.setStatus(Message.MessageStatus.SENT);
 
-        // 1. Primary Save & Broadcast (Local Instance Resilience)
-        // This ensures the message appears instantly for the sender and anyone on this
-        // server
-        // even if Kafka cloud or local Kafka is currently down.
+        // 1. Broadcast & Write-Behind Save (Local Instance Resilience)
+        // The message appears instantly for the sender and anyone on this server even
+        // if Kafka is down; MongoDB persistence is batched off the inbound thread and
+        // acked to the sender on /user/queue/ack once durable.
         try {
-            messageRepository.save(message); // Persist to MongoDB (which is up)
-            messagingTemplate.convertAndSend("/topic/room/" + roomId, message);
-            log.info("Message handled locally for room: {}", roomId);
+            broadcaster.broadcast(message);
+            sample.stop(ingestTimer);
+            recentBuffer.add(message);
+            persistenceService.enqueue(message, sessionId, request.getClientMessageId());
+            log.debug("Message {} handled locally for room: {}", message.getId(), roomId);
         } catch (Exception e) {
-            log.error("Local persistence failed: {}", e.getMessage());
+            log.error("Local delivery failed: {}", e.getMessage());
         }
 
         // 2. Secondary Distribution (Kafka for Multi-Instance Scaling)
         // This distributes the message to other backend instances in a production
         // cluster.
-        kafkaProducer.sendMessage(message);
+        try {
+            kafkaProducer.sendMessage(message);
+        } catch (Exception e) {
+            // already logged (rate-limited) by the producer; the lane moves on to the next message
+        }
     }
 
     @MessageMapping("/typing/{roomId}")
-    public void handleTyping(@DestinationVariable String roomId, @RequestBody Map<String, String> payload) {
-        messagingTemplate.convertAndSend("/topic/room/" + roomId + "/typing", payload);
+    public void handleTyping(@DestinationVariable String roomId, @RequestBody Map<String, Object> payload) {
+        // Aggregated per room; snapshots go out on /topic/room/{roomId}/typing
+        Object username = payload.get("username");
+        typingIndicatorService.update(roomId, username != null ? username.toString() : null,
+                Boolean.parseBoolean(String.valueOf(payload.get("typing"))));
     }
 
     @MessageMapping("/read/{roomId}")
     public void handleReadReceipt(@DestinationVariable String roomId, @RequestBody Map<String, String> payload) {
-        String messageId = payload.get("messageId");
-        if (messageId != null) {
-            messageRepository.findById(messageId).ifPresent(msg -> {
-                msg.setStatus(Message.MessageStatus.READ);
-                messageRepository.save(msg);
-            });
-        }
-        messagingTemplate.convertAndSend("/topic/room/" + roomId + "/status", payload);
+        // Coalesced into a read watermark, flushed and broadcast once per window
+        readReceiptService.record(roomId, payload.get("reader"), payload.get("messageId"));
     }
 }
\ No newline at end of file
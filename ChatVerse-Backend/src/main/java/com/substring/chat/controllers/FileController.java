@@ -1,23 +1,34 @@
 package com.substring.chat.controllers;
 
+import com.substring.chat.entities.UploadSession;
+import com.substring.chat.services.ChunkedUploadService;
+import com.substring.chat.services.FileStorageService;
+import com.substring.chat.services.ThumbnailService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
-import java.io.File;
 
 @RestController
 @RequestMapping("/api/v1/files")
 @CrossOrigin("*")
 public class FileController {
 
-    private final String UPLOAD_DIR = "uploads/";
+    private final FileStorageService fileStorageService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final ThumbnailService thumbnailService;
+
+    public FileController(FileStorageService fileStorageService, ChunkedUploadService chunkedUploadService,
+            ThumbnailService thumbnailService) {
+        this.fileStorageService = fileStorageService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.thumbnailService = thumbnailService;
+    }
 
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file) {
@@ -25,26 +36,64 @@ public class FileController {
             return ResponseEntity.badRequest().body("File is empty");
         }
 
-        try {
-            File directory = new File(UPLOAD_DIR);
-            if (!directory.exists()) {
-                directory.mkdirs();
-            }
-
-            String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-            Path path = Paths.get(UPLOAD_DIR + fileName);
-            Files.copy(file.getInputStream(), path);
-
-            // Return full URL or relative path
-            // For now, returning relative path which will be appended to base URL in
-            // frontend
-            String fileUrl = "/uploads/" + fileName;
-            return ResponseEntity.ok(Map.of(
-                    "fileUrl", fileUrl,
-                    "fileName", file.getOriginalFilename(),
-                    "fileType", file.getContentType()));
+        try (InputStream content = file.getInputStream()) {
+            // Streamed to disk and hashed in one pass; identical content is stored once
+            FileStorageService.StoredFile stored = fileStorageService.store(content,
+                    file.getOriginalFilename(), file.getContentType());
+            return ResponseEntity.ok(toResponse(stored, file.getOriginalFilename(), file.getContentType()));
         } catch (IOException e) {
             return ResponseEntity.internalServerError().body("Could not upload file: " + e.getMessage());
         }
     }
+
+    // Resumable upload, step 1: reserve the file; body {fileName, fileType, size}
+    @PostMapping("/uploads")
+    public ResponseEntity<?> initUpload(@RequestBody Map<String, Object> payload) throws IOException {
+        Object size = payload.get("size");
+        if (size == null) {
+            return ResponseEntity.badRequest().body("File size is required");
+        }
+        UploadSession session = chunkedUploadService.init((String) payload.get("fileName"),
+                (String) payload.get("fileType"), Long.parseLong(size.toString()));
+        return ResponseEntity.status(HttpStatus.CREATED).body(session);
+    }
+
+    // Step 2: raw chunk bytes at ?offset=; chunks can be sent in parallel and retried
+    @PutMapping(value = "/uploads/{uploadId}", consumes = "application/octet-stream")
+    public ResponseEntity<?> uploadChunk(@PathVariable String uploadId, @RequestParam("offset") long offset,
+            InputStream body) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.writeChunk(uploadId, offset, body));
+    }
+
+    // Progress for resume: which chunks the server already has
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId) {
+        return ResponseEntity.ok(chunkedUploadService.get(uploadId));
+    }
+
+    // Step 3: verify all chunks arrived and store the file
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String uploadId) throws IOException {
+        UploadSession session = chunkedUploadService.get(uploadId);
+        FileStorageService.StoredFile stored = chunkedUploadService.complete(uploadId);
+        return ResponseEntity.ok(toResponse(stored, session.getFileName(), session.getContentType()));
+    }
+
+    // Relative urls, appended to the base URL in the frontend. Image previews are
+    // generated in the background; thumbnailUrl is valid once that job finishes.
+    private Map<String, Object> toResponse(FileStorageService.StoredFile stored, String fileName, String fileType) {
+        boolean preview = thumbnailService.submit(stored.blob());
+        String fileUrl = fileStorageService.urlOf(stored.blob());
+        Map<String, Object> response = new HashMap<>();
+        response.put("fileUrl", fileUrl);
+        response.put("fileName", fileName != null ? fileName : "");
+        response.put("fileType", fileType != null ? fileType : "application/octet-stream");
+        response.put("size", stored.blob().getSize());
+        response.put("deduplicated", stored.deduplicated());
+        String thumbnailUrl = preview ? thumbnailService.thumbnailUrlFor(fileUrl) : null;
+        if (thumbnailUrl != null) {
+            response.put("thumbnailUrl", thumbnailUrl);
+        }
+        return response;
+    }
 }
@@ -0,0 +1,29 @@
+package com.substring.chat.controllers;
+
+import com.substring.chat.config.AppConstants;
+import com.substring.chat.services.PresenceService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/v1/presence")
+@CrossOrigin(AppConstants.FRONT_END_BASE_URL)
+public class PresenceController {
+
+    private final PresenceService presenceService;
+
+    public PresenceController(PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    // current online set, served from memory
+    @GetMapping
+    public ResponseEntity<Set<String>> getOnlineUsers() {
+        return ResponseEntity.ok(presenceService.getOnlineUsers());
+    }
+}
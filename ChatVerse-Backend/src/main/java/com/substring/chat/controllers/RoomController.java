@@ -3,11 +3,18 @@ package com.substring.chat.controllers;
 import com.substring.chat.config.AppConstants;
 import com.substring.chat.entities.Message;
 import com.substring.chat.entities.Room;
-import com.substring.chat.repositories.MessageRepository;
-import com.substring.chat.repositories.RoomRepository;
+import com.substring.chat.payload.MessageDelta;
+import com.substring.chat.payload.MessagePage;
+import com.substring.chat.payload.SearchHit;
+import com.substring.chat.search.MessageSearchIndex;
+import com.substring.chat.services.DirectoryService;
+import com.substring.chat.services.MessageHistoryService;
+import com.substring.chat.services.RoomCacheService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -17,12 +24,17 @@ import java.util.Map;
 @CrossOrigin(AppConstants.FRONT_END_BASE_URL)
 public class RoomController {
 
-    private final RoomRepository roomRepository;
-    private final MessageRepository messageRepository;
+    private final MessageHistoryService messageHistoryService;
+    private final RoomCacheService roomCacheService;
+    private final DirectoryService directoryService;
+    private final MessageSearchIndex searchIndex;
 
-    public RoomController(RoomRepository roomRepository, MessageRepository messageRepository) {
-        this.roomRepository = roomRepository;
-        this.messageRepository = messageRepository;
+    public RoomController(MessageHistoryService messageHistoryService, RoomCacheService roomCacheService,
+            DirectoryService directoryService, MessageSearchIndex searchIndex) {
+        this.messageHistoryService = messageHistoryService;
+        this.roomCacheService = roomCacheService;
+        this.directoryService = directoryService;
+        this.searchIndex = searchIndex;
     }
 
     // create room
@@ -33,20 +45,18 @@ public class RoomController {
         if (roomId == null || roomId.trim().isEmpty()) {
             return ResponseEntity.badRequest().body("Room ID is required!");
         }
-        if (roomRepository.findByRoomId(roomId) != null) {
+        // the unique index on roomId decides between concurrent creators
+        Room savedRoom = roomCacheService.create(roomId, roomName != null ? roomName : "Room " + roomId);
+        if (savedRoom == null) {
             return ResponseEntity.badRequest().body("Room already exists!");
         }
-        Room room = new Room();
-        room.setRoomId(roomId);
-        room.setRoomName(roomName != null ? roomName : "Room " + roomId);
-        Room savedRoom = roomRepository.save(room);
         return ResponseEntity.status(HttpStatus.CREATED).body(savedRoom);
     }
 
     // join room
     @GetMapping("/{roomId}")
     public ResponseEntity<?> joinRoom(@PathVariable String roomId) {
-        Room room = roomRepository.findByRoomId(roomId);
+        Room room = roomCacheService.find(roomId);
         if (room == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Room not found!!");
         }
@@ -59,20 +69,52 @@ public class RoomController {
             @PathVariable String roomId,
             @RequestParam(value = "limit", defaultValue = "50", required = false) int limit) {
 
-        // Fetching messages directly from MessageRepository instead of Room entity
-        List<Message> messages = messageRepository.findByRoomId(roomId);
+        // Only the last N messages are read from Mongo (index range scan)
+        return ResponseEntity.ok(messageHistoryService.latest(roomId, limit));
+    }
 
-        // Return last N messages for better performance
-        if (messages.size() > limit) {
-            messages = messages.subList(messages.size() - limit, messages.size());
-        }
+    // cursor based history: scroll back with "before", catch up with "after"
+    @GetMapping("/{roomId}/messages/page")
+    public ResponseEntity<MessagePage> getMessagePage(
+            @PathVariable String roomId,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "50", required = false) int limit) {
+        return ResponseEntity.ok(messageHistoryService.page(roomId, before, after, limit));
+    }
 
-        return ResponseEntity.ok(messages);
+    // reconnect catch-up: only what came after the last seq the client saw
+    @GetMapping("/{roomId}/messages/since")
+    public ResponseEntity<MessageDelta> getMessagesSince(
+            @PathVariable String roomId,
+            @RequestParam("seq") long seq,
+            @RequestParam(value = "limit", defaultValue = "200", required = false) int limit) {
+        return ResponseEntity.ok(messageHistoryService.since(roomId, seq, limit));
     }
 
-    // get all rooms
+    // full-text search in the room's messages, best matches first (limit capped at 100)
+    @GetMapping("/{roomId}/search")
+    public ResponseEntity<List<SearchHit>> search(
+            @PathVariable String roomId,
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20", required = false) int limit) {
+        return ResponseEntity.ok(searchIndex.search(roomId, query, limit));
+    }
+
+    // get rooms (paged, optional roomId prefix)
     @GetMapping
-    public ResponseEntity<List<Room>> getAllRooms() {
-        return ResponseEntity.ok(roomRepository.findAll());
+    public ResponseEntity<List<Room>> getAllRooms(
+            @RequestParam(value = "q", required = false) String prefix,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "100") int size) {
+        return ResponseEntity.ok(directoryService.rooms(prefix, page, size));
+    }
+
+    // all rooms as NDJSON, streamed from a cursor
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportRooms() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(directoryService::exportRooms);
     }
 }
\ No newline at end of file
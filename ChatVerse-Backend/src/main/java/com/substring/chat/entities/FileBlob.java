@@ -0,0 +1,27 @@
+package com.substring.chat.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// One stored attachment, addressed by the SHA-256 of its content
+@Document(collection = "file_blobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileBlob {
+    @Id
+    private String id; // sha-256 hex
+    private String path; // relative to the upload root, e.g. blobs/ab/ab12...ef.png
+    private long size;
+    private String contentType;
+    private boolean referenced; // set once a persisted message points at this blob
+    private String thumbnailPath; // set once the preview is generated (images only)
+    private LocalDateTime createdAt;
+}
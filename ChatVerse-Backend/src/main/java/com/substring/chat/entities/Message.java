@@ -5,11 +5,19 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "messages")
+// room_time_idx backs keyset pagination of room history (newest first, _id as tie-breaker),
+// room_seq_idx the resume-from-seq catch-up
+@CompoundIndexes({
+        @CompoundIndex(name = "room_time_idx", def = "{'roomId': 1, 'timeStamp': -1, '_id': -1}"),
+        @CompoundIndex(name = "room_seq_idx", def = "{'roomId': 1, 'seq': 1}")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -20,11 +28,13 @@ public class Message {
     private String id;
     private String sender;
     private String content;
-    private LocalDateTime timeStamp;
+    private LocalDateTime timeStamp; // server's default zone, as Mongo's Date conversion assumes
     private String roomId;
+    private Long seq; // per-room, increasing in ingest order; null for messages that predate it
     private String fileUrl;
     private String fileName;
     private String fileType;
+    private String thumbnailUrl; // small preview for image attachments
 
     // Status for Read Receipts
     private MessageStatus status = MessageStatus.SENT;
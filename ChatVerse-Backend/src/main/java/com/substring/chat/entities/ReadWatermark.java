@@ -0,0 +1,27 @@
+package com.substring.chat.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// "Read up to" position of one user in one room, replaces per-message READ updates
+@Document(collection = "read_watermarks")
+@CompoundIndex(name = "room_reader_idx", def = "{'roomId': 1, 'reader': 1}", unique = true)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadWatermark {
+    @Id
+    private String id;
+    private String roomId;
+    private String reader;
+    private String lastReadMessageId; // ObjectId hex, ordered by ingest time
+    private LocalDateTime updatedAt;
+}
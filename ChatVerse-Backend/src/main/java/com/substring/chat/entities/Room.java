@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "rooms")
@@ -15,6 +16,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 public class Room {
     @Id
     private String id; // Mongo DB unique identifier
+    @Indexed(unique = true) // duplicate creates fail atomically in Mongo
     private String roomId;
     private String roomName;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.substring.chat.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// High-water mark of the message sequence numbers handed out for one room
+@Document(collection = "room_sequences")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomSequence {
+    @Id
+    private String roomId;
+    private long seq; // last reserved number; instances reserve blocks of numbers at a time
+}
@@ -0,0 +1,37 @@
+package com.substring.chat.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+// Server-side state of a resumable chunked upload
+@Document(collection = "upload_sessions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+    @Id
+    private String id;
+    private String fileName;
+    private String contentType;
+    private long size;
+    private int chunkSize;
+    private Set<Integer> receivedChunks = new HashSet<>();
+    private LocalDateTime createdAt;
+
+    public int getChunkCount() {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    public boolean isComplete() {
+        return receivedChunks.size() == getChunkCount();
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -19,7 +20,9 @@ import java.util.Set;
 public class User {
     @Id
     private String id;
+    @Indexed // directory prefix search
     private String name;
+    @Indexed(unique = true)
     private String email;
     private String password;
     private Set<String> roles = new HashSet<>();
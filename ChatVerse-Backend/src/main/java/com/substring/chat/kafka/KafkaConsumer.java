@@ -1,35 +1,164 @@
 package com.substring.chat.kafka;
 
+import com.substring.chat.config.ClusterInstance;
+import com.substring.chat.config.RoomSubscriptionRegistry;
 import com.substring.chat.entities.Message;
-import com.substring.chat.repositories.MessageRepository;
+import com.substring.chat.services.MessageDeduplicator;
+import com.substring.chat.services.MessagePersistenceService;
+import com.substring.chat.services.RecentMessageBuffer;
+import com.substring.chat.services.RoomBroadcaster;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.bson.types.ObjectId;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 @Slf4j
 public class KafkaConsumer {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    private final MessageRepository messageRepository;
+    private final RoomBroadcaster broadcaster;
+    private final MessagePersistenceService persistenceService;
+    private final MessageDeduplicator deduplicator;
+    private final ClusterInstance clusterInstance;
+    private final RoomSubscriptionRegistry subscriptionRegistry;
+    private final RecentMessageBuffer recentBuffer;
+    private final Timer singleTimer;
+    private final Timer batchTimer;
+    private final Counter delivered;
+    private final Counter duplicates;
+    private final Counter ignored;
 
-    public KafkaConsumer(SimpMessagingTemplate messagingTemplate, MessageRepository messageRepository) {
-        this.messagingTemplate = messagingTemplate;
-        this.messageRepository = messageRepository;
+    public KafkaConsumer(RoomBroadcaster broadcaster, MessagePersistenceService persistenceService,
+            MessageDeduplicator deduplicator, ClusterInstance clusterInstance,
+            RoomSubscriptionRegistry subscriptionRegistry, RecentMessageBuffer recentBuffer,
+            MeterRegistry meterRegistry) {
+        this.broadcaster = broadcaster;
+        this.persistenceService = persistenceService;
+        this.deduplicator = deduplicator;
+        this.clusterInstance = clusterInstance;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.recentBuffer = recentBuffer;
+        this.singleTimer = meterRegistry.timer("chat.kafka.consume", "mode", "single");
+        this.batchTimer = meterRegistry.timer("chat.kafka.consume", "mode", "batch");
+        this.delivered = meterRegistry.counter("chat.kafka.consumed", "result", "delivered");
+        this.duplicates = meterRegistry.counter("chat.kafka.consumed", "result", "duplicate");
+        this.ignored = meterRegistry.counter("chat.kafka.consumed", "result", "ignored");
     }
 
-    @KafkaListener(topics = "chat-messages", groupId = "chat-group")
+    // Group and offset reset come from ClusterInstance: one shared group, or one group per instance in fanout mode
+    @KafkaListener(topics = "chat-messages", groupId = "#{@clusterInstance.consumerGroup}",
+            properties = "auto.offset.reset=#{@clusterInstance.offsetReset}",
+            autoStartup = "#{!${chat.app.kafka.batch:false}}")
     public void consume(Message message) {
-        log.info("Consumed message from Kafka: {}", message.getContent());
+        singleTimer.record(() -> handle(message));
+    }
+
+    private void handle(Message message) {
+        if (!isRelevant(message)) {
+            ignored.increment();
+            return;
+        }
+        // Already broadcast and queued for persistence by this instance at ingest
+        if (!deduplicator.markSeen(message.getId())) {
+            log.debug("Skipping duplicate message {}", message.getId());
+            duplicates.increment();
+            return;
+        }
 
-        // 1. Persist to MongoDB asynchronously (Scaling persistence)
-        messageRepository.save(message);
+        // 1. Persist to MongoDB (idempotent insert keyed by the ingest id).
+        // In fanout mode the ingesting instance owns persistence, the rest only deliver.
+        if (!clusterInstance.isFanout()) {
+            persistenceService.enqueue(message, null, null);
+        }
 
         // 2. Broadcast to WebSocket topic for real-time delivery
-        if (message.getRoomId() != null) {
-            messagingTemplate.convertAndSend("/topic/room/" + message.getRoomId(), message);
-            log.info("Broadcasted message to room: {}", message.getRoomId());
+        broadcaster.broadcast(message);
+        recentBuffer.add(message);
+        delivered.increment();
+        log.debug("Broadcast message {} to room: {}", message.getId(), message.getRoomId());
+    }
+
+    /**
+     * Batch mode (chat.app.kafka.batch=true): one bulk insert per poll, then one
+     * frame per room. The batch is written before returning, so offsets are only
+     * committed for durable messages; failures go through KafkaRetryConfig.
+     */
+    @KafkaListener(topics = "chat-messages", groupId = "#{@clusterInstance.consumerGroup}",
+            properties = "auto.offset.reset=#{@clusterInstance.offsetReset}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${chat.app.kafka.batch:false}")
+    public void consumeBatch(List<ConsumerRecord<String, Message>> records) {
+        Timer.Sample sample = Timer.start();
+        log.debug("Consumed batch of {} records from Kafka", records.size());
+
+        List<Message> accepted = new ArrayList<>(records.size());
+        Set<String> batchIds = new HashSet<>();
+        int poisonIndex = -1;
+        for (int i = 0; i < records.size(); i++) {
+            Message message = records.get(i).value();
+            if (message == null) {
+                // ErrorHandlingDeserializer hands over undeserializable records as null
+                poisonIndex = i;
+                break;
+            }
+            // ids are only marked seen after the write succeeds, so a retried batch is not skipped
+            if (isRelevant(message) && !deduplicator.isSeen(message.getId()) && batchIds.add(message.getId())) {
+                accepted.add(message);
+            }
+        }
+
+        if (!clusterInstance.isFanout()) {
+            persistenceService.persistNow(accepted);
         }
+        accepted.forEach(m -> deduplicator.markSeen(m.getId()));
+        broadcastByRoom(accepted);
+        accepted.forEach(recentBuffer::add);
+        delivered.increment(accepted.size());
+        int handled = poisonIndex >= 0 ? poisonIndex : records.size();
+        if (handled > accepted.size()) {
+            ignored.increment(handled - accepted.size()); // irrelevant or already seen
+        }
+        sample.stop(batchTimer);
+
+        if (poisonIndex >= 0) {
+            // records before the index are done; the error handler dead-letters this one
+            throw new BatchListenerFailedException("Undeserializable record in chat batch", poisonIndex);
+        }
+    }
+
+    private boolean isRelevant(Message message) {
+        if (message.getRoomId() == null) {
+            return false;
+        }
+        // Fanout: every instance sees every record, only rooms with local subscribers matter here
+        if (clusterInstance.isFanout() && !subscriptionRegistry.hasLocalSubscribers(message.getRoomId())) {
+            // the room's recent ring would silently fall behind
+            recentBuffer.invalidate(message.getRoomId());
+            return false;
+        }
+        if (message.getId() == null) {
+            // produced by an instance that predates ingest ids
+            message.setId(new ObjectId().toHexString());
+        }
+        return true;
+    }
+
+    // One frame per room: a single message as before, several as an ordered array
+    private void broadcastByRoom(List<Message> messages) {
+        Map<String, List<Message>> byRoom = new LinkedHashMap<>();
+        messages.forEach(m -> byRoom.computeIfAbsent(m.getRoomId(), r -> new ArrayList<>()).add(m));
+        byRoom.forEach(broadcaster::broadcast);
     }
 }
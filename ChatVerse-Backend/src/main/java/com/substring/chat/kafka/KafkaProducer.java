@@ -1,11 +1,14 @@
 package com.substring.chat.kafka;
 
 import com.substring.chat.entities.Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -13,26 +16,61 @@ public class KafkaProducer {
 
     private final KafkaTemplate<String, Message> kafkaTemplate;
     private static final String TOPIC = "chat-messages";
+    public static final String ROOM_EVENTS_TOPIC = "room-events";
+    private static final long FAILURE_LOG_INTERVAL_MS = 10_000;
 
-    public KafkaProducer(KafkaTemplate<String, Message> kafkaTemplate) {
+    private final Timer sendSuccess;
+    private final Timer sendFailure;
+    // while Kafka is down every message fails: log once per interval with a count instead
+    private final AtomicLong lastFailureLog = new AtomicLong();
+    private final AtomicLong suppressedFailures = new AtomicLong();
+
+    public KafkaProducer(KafkaTemplate<String, Message> kafkaTemplate, MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
+        this.sendSuccess = meterRegistry.timer("chat.kafka.send", "outcome", "success");
+        this.sendFailure = meterRegistry.timer("chat.kafka.send", "outcome", "failure");
     }
 
     public void sendMessage(Message message) {
+        long start = System.nanoTime();
         try {
             // Use roomId as the partition key to ensure message ordering
             // Send asynchronously to avoid blocking the main WebSocket thread if Kafka is
             // slow or down
             kafkaTemplate.send(TOPIC, message.getRoomId(), message).whenComplete((result, ex) -> {
+                // until acked by the broker (acks=all)
                 if (ex != null) {
-                    log.error("Kafka delivery failed for message from {}: {}", message.getSender(), ex.getMessage());
+                    sendFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    logFailure("Kafka delivery failed for message " + message.getId(), ex);
                 } else {
-                    log.info("Message sent to Kafka successfully: offset {}", result.getRecordMetadata().offset());
+                    sendSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    log.debug("Message {} sent to Kafka: offset {}", message.getId(), result.getRecordMetadata().offset());
                 }
             });
         } catch (Exception e) {
-            log.error("Immediate error while handing message to Kafka producer: {}", e.getMessage());
+            sendFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            logFailure("Immediate error while handing message to Kafka producer", e);
             throw e; // Rethrow to trigger fallback logic in Controller if needed
         }
     }
+
+    private void logFailure(String what, Throwable ex) {
+        long now = System.currentTimeMillis();
+        long last = lastFailureLog.get();
+        if (now - last >= FAILURE_LOG_INTERVAL_MS && lastFailureLog.compareAndSet(last, now)) {
+            long suppressed = suppressedFailures.getAndSet(0);
+            log.error("{}: {} ({} similar failures suppressed)", what, ex.getMessage(), suppressed);
+        } else {
+            suppressedFailures.incrementAndGet();
+        }
+    }
+
+    // Key-only record: tells every instance to drop its cached copy of the room
+    public void publishRoomChanged(String roomId) {
+        kafkaTemplate.send(ROOM_EVENTS_TOPIC, roomId, null).whenComplete((result, ex) -> {
+            if (ex != null) {
+                log.error("Room invalidation for {} not published: {}", roomId, ex.getMessage());
+            }
+        });
+    }
 }
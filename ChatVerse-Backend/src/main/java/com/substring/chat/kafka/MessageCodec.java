@@ -0,0 +1,237 @@
+package com.substring.chat.kafka;
+
+import com.substring.chat.entities.Message;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of {@link Message} for the chat-messages topic.
+ *
+ * <pre>
+ * magic(0xC1) version(1) fields:varint
+ * [id] [sender] [content] [timeStamp] [roomId] [fileUrl] [fileName] [fileType] [thumbnailUrl] [status] [seq]
+ * </pre>
+ * Only fields whose bit is set in {@code fields} are written, in that order.
+ * Strings are varint length + UTF-8, ids that are ObjectId hex go as their 12
+ * raw bytes, timeStamp is zigzag varint epoch millis (UTC), status is the enum
+ * ordinal and seq a plain varint. New fields get the next bit and are appended
+ * at the end, so older readers simply stop before them; incompatible changes
+ * bump the version.
+ * 0xC1 never starts a JSON document, which lets the deserializer tell the two apart.
+ */
+public final class MessageCodec {
+
+    public static final byte MAGIC = (byte) 0xC1;
+    public static final byte VERSION = 1;
+
+    private static final int ID = 1;
+    private static final int ID_OBJECT_ID = 1 << 1;
+    private static final int SENDER = 1 << 2;
+    private static final int CONTENT = 1 << 3;
+    private static final int TIME_STAMP = 1 << 4;
+    private static final int ROOM_ID = 1 << 5;
+    private static final int FILE_URL = 1 << 6;
+    private static final int FILE_NAME = 1 << 7;
+    private static final int FILE_TYPE = 1 << 8;
+    private static final int THUMBNAIL_URL = 1 << 9;
+    private static final int STATUS = 1 << 10;
+    private static final int SEQ = 1 << 11;
+
+    private static final Message.MessageStatus[] STATUSES = Message.MessageStatus.values();
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private MessageCodec() {
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(Message m) {
+        int fields = 0;
+        boolean objectId = m.getId() != null && isObjectIdHex(m.getId());
+        if (m.getId() != null) fields |= objectId ? ID | ID_OBJECT_ID : ID;
+        if (m.getSender() != null) fields |= SENDER;
+        if (m.getContent() != null) fields |= CONTENT;
+        if (m.getTimeStamp() != null) fields |= TIME_STAMP;
+        if (m.getRoomId() != null) fields |= ROOM_ID;
+        if (m.getFileUrl() != null) fields |= FILE_URL;
+        if (m.getFileName() != null) fields |= FILE_NAME;
+        if (m.getFileType() != null) fields |= FILE_TYPE;
+        if (m.getThumbnailUrl() != null) fields |= THUMBNAIL_URL;
+        if (m.getStatus() != null) fields |= STATUS;
+        if (m.getSeq() != null) fields |= SEQ;
+
+        Writer out = new Writer(64 + (m.getContent() != null ? m.getContent().length() : 0));
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong(fields);
+        if (objectId) {
+            out.writeObjectId(m.getId());
+        } else if (m.getId() != null) {
+            out.writeString(m.getId());
+        }
+        out.writeString(m.getSender());
+        out.writeString(m.getContent());
+        if (m.getTimeStamp() != null) {
+            long millis = m.getTimeStamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+            out.writeVarLong((millis << 1) ^ (millis >> 63));
+        }
+        out.writeString(m.getRoomId());
+        out.writeString(m.getFileUrl());
+        out.writeString(m.getFileName());
+        out.writeString(m.getFileType());
+        out.writeString(m.getThumbnailUrl());
+        if (m.getStatus() != null) {
+            out.writeVarLong(m.getStatus().ordinal());
+        }
+        if (m.getSeq() != null) {
+            out.writeVarLong(m.getSeq());
+        }
+        return out.toByteArray();
+    }
+
+    public static Message decode(byte[] data) {
+        if (data.length < 2 || data[0] != MAGIC) {
+            throw new SerializationException("Not a binary chat message");
+        }
+        if (data[1] != VERSION) {
+            throw new SerializationException("Unsupported chat message version " + data[1]);
+        }
+        try {
+            Reader in = new Reader(data, 2);
+            int fields = (int) in.readVarLong();
+            Message m = new Message();
+            if ((fields & ID) != 0) m.setId((fields & ID_OBJECT_ID) != 0 ? in.readObjectId() : in.readString());
+            if ((fields & SENDER) != 0) m.setSender(in.readString());
+            if ((fields & CONTENT) != 0) m.setContent(in.readString());
+            if ((fields & TIME_STAMP) != 0) {
+                long zigzag = in.readVarLong();
+                long millis = (zigzag >>> 1) ^ -(zigzag & 1);
+                m.setTimeStamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+            }
+            if ((fields & ROOM_ID) != 0) m.setRoomId(in.readString());
+            if ((fields & FILE_URL) != 0) m.setFileUrl(in.readString());
+            if ((fields & FILE_NAME) != 0) m.setFileName(in.readString());
+            if ((fields & FILE_TYPE) != 0) m.setFileType(in.readString());
+            if ((fields & THUMBNAIL_URL) != 0) m.setThumbnailUrl(in.readString());
+            // absent means null, not the entity's SENT default
+            m.setStatus((fields & STATUS) != 0 ? STATUSES[(int) in.readVarLong()] : null);
+            if ((fields & SEQ) != 0) m.setSeq(in.readVarLong());
+            return m;
+        } catch (IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated chat message", e);
+        }
+    }
+
+    private static boolean isObjectIdHex(String id) {
+        if (id.length() != 24) {
+            return false;
+        }
+        for (int i = 0; i < 24; i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false; // upper case would not round-trip
+            }
+        }
+        return true;
+    }
+
+    private static final class Writer {
+        private byte[] buf;
+        private int pos;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void writeByte(byte b) {
+            ensure(1);
+            buf[pos++] = b;
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeObjectId(String hex) {
+            ensure(12);
+            for (int i = 0; i < 24; i += 2) {
+                buf[pos++] = (byte) ((Character.digit(hex.charAt(i), 16) << 4) | Character.digit(hex.charAt(i + 1), 16));
+            }
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+            throw new SerializationException("Malformed varint");
+        }
+
+        String readString() {
+            int len = (int) readVarLong();
+            if (len < 0 || len > buf.length - pos) {
+                throw new IndexOutOfBoundsException(len);
+            }
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        String readObjectId() {
+            byte[] hex = new byte[24];
+            for (int i = 0; i < 12; i++) {
+                byte b = buf[pos++];
+                hex[2 * i] = HEX[(b >> 4) & 0xF];
+                hex[2 * i + 1] = HEX[b & 0xF];
+            }
+            return new String(hex, StandardCharsets.US_ASCII);
+        }
+    }
+}
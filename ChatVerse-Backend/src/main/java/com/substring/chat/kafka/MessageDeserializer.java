@@ -0,0 +1,35 @@
+package com.substring.chat.kafka;
+
+import com.substring.chat.entities.Message;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+/**
+ * Value deserializer for chat-messages. Binary records go through
+ * {@link MessageCodec}; anything else is read as JSON into the fixed
+ * Message type (type headers ignored), so records from instances still
+ * on the JSON serializer keep working during a rolling switch.
+ */
+public class MessageDeserializer implements Deserializer<Message> {
+
+    private final JsonDeserializer<Message> json = new JsonDeserializer<>(Message.class, false);
+
+    @Override
+    public Message deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        return MessageCodec.isBinary(data) ? MessageCodec.decode(data) : json.deserialize(topic, data);
+    }
+
+    @Override
+    public Message deserialize(String topic, Headers headers, byte[] data) {
+        return deserialize(topic, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
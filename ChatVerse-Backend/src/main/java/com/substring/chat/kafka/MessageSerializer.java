@@ -0,0 +1,27 @@
+package com.substring.chat.kafka;
+
+import com.substring.chat.entities.Message;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Value serializer for chat-messages using {@link MessageCodec}. Writes no
+ * type headers. Raw byte[] values pass through untouched: that is what the
+ * dead-letter recoverer hands over for records that failed to deserialize.
+ */
+public class MessageSerializer implements Serializer<Object> {
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (data == null) {
+            return null; // key-only records, e.g. room-events
+        }
+        if (data instanceof Message message) {
+            return MessageCodec.encode(message);
+        }
+        if (data instanceof byte[] raw) {
+            return raw;
+        }
+        throw new SerializationException("Cannot serialize " + data.getClass().getName() + " for " + topic);
+    }
+}
@@ -0,0 +1,31 @@
+package com.substring.chat.kafka;
+
+import com.substring.chat.services.RoomCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class RoomEventConsumer {
+
+    private final RoomCacheService roomCacheService;
+
+    public RoomEventConsumer(RoomCacheService roomCacheService) {
+        this.roomCacheService = roomCacheService;
+    }
+
+    // Every instance needs every invalidation, so the group is always per instance. The group
+    // survives restarts, and a new one starts at the beginning: replaying invalidations is
+    // harmless, while skipping those sent during startup would leave stale entries.
+    @KafkaListener(topics = KafkaProducer.ROOM_EVENTS_TOPIC,
+            groupId = "#{@clusterInstance.roomEventsGroup}",
+            properties = "auto.offset.reset=earliest")
+    public void onRoomChanged(ConsumerRecord<String, ?> record) {
+        if (record.key() != null) {
+            log.debug("Invalidating cached room {}", record.key());
+            roomCacheService.invalidate(record.key());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.substring.chat.payload;
+
+import com.substring.chat.entities.Message;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a room's history: (timeStamp, id) of a boundary message.
+ * Encoded as an opaque url-safe token for clients; the id may be null when
+ * the caller only supplied a timestamp.
+ */
+@Getter
+@AllArgsConstructor
+public class MessageCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final LocalDateTime timeStamp;
+    private final String id;
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getTimeStamp(), message.getId());
+    }
+
+    public String encode() {
+        String raw = timeStamp + (id != null ? SEPARATOR + id : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Accepts an ISO timestamp or a token produced by {@link #encode()}.
+     * Raw message ids are not resolved here, see {@link #isMessageId(String)}.
+     */
+    public static MessageCursor decode(String value) {
+        try {
+            return new MessageCursor(LocalDateTime.parse(value), null);
+        } catch (DateTimeParseException ignored) {
+            // not a plain timestamp, fall through to token
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(SEPARATOR);
+            if (sep < 0) {
+                return new MessageCursor(LocalDateTime.parse(raw), null);
+            }
+            return new MessageCursor(LocalDateTime.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + value);
+        }
+    }
+
+    public static boolean isMessageId(String value) {
+        return ObjectId.isValid(value);
+    }
+}
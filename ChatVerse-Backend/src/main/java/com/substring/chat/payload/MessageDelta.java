@@ -0,0 +1,19 @@
+package com.substring.chat.payload;
+
+import com.substring.chat.entities.Message;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageDelta {
+    private List<Message> messages; // seq order, oldest -> newest
+    private long lastSeq; // pass back as seq to continue; the requested seq when nothing was missed
+    private boolean hasMore;
+}
@@ -0,0 +1,19 @@
+package com.substring.chat.payload;
+
+import com.substring.chat.entities.Message;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePage {
+    private List<Message> messages; // always oldest -> newest
+    private String nextCursor; // pass back as before/after to continue in the same direction
+    private boolean hasMore;
+}
@@ -19,4 +19,5 @@ public class MessageRequest {
     private String fileUrl;
     private String fileName;
     private String fileType;
+    private String clientMessageId; // optional, echoed back in the persistence ack
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.substring.chat.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.substring.chat.entities.Message;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Wire form of a broadcast message: no roomId (implied by the destination), no nulls; the other
+// fields, timeStamp included, serialize exactly like the Message that REST history returns
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OutboundMessage {
+    private final String id;
+    private final Long seq;
+    private final String sender;
+    private final String content;
+    private final LocalDateTime timeStamp;
+    private final String fileUrl;
+    private final String fileName;
+    private final String fileType;
+    private final String thumbnailUrl;
+    private final Message.MessageStatus status;
+
+    private OutboundMessage(Message m) {
+        this.id = m.getId();
+        this.seq = m.getSeq();
+        this.sender = m.getSender();
+        this.content = m.getContent();
+        this.timeStamp = m.getTimeStamp();
+        this.fileUrl = m.getFileUrl();
+        this.fileName = m.getFileName();
+        this.fileType = m.getFileType();
+        this.thumbnailUrl = m.getThumbnailUrl();
+        this.status = m.getStatus();
+    }
+
+    public static OutboundMessage from(Message message) {
+        return new OutboundMessage(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.substring.chat.payload;
+
+import com.substring.chat.entities.Message;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+    private Message message;
+    private double score; // BM25, only comparable within one result list
+}
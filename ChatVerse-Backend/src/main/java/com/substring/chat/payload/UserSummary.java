@@ -0,0 +1,19 @@
+package com.substring.chat.payload;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Public view of a user; also the Mongo projection, so the password hash is never read
+@Getter
+@Setter
+@NoArgsConstructor
+public class UserSummary {
+    private String id;
+    private String name;
+    private String email;
+    private boolean online;
+    private LocalDateTime lastSeen;
+}
@@ -0,0 +1,30 @@
+package com.substring.chat.search;
+
+// One searchable part of a room's index: an on-disk segment or a memtable snapshot. Doc ids are local to it.
+interface IndexSource {
+
+    int docCount();
+
+    long totalLength();
+
+    int docFreq(String term);
+
+    // doc-ordered postings of the term, null when it does not occur
+    Postings postings(String term);
+
+    String messageId(int doc);
+
+    long timeMillis(int doc);
+
+    int length(int doc);
+
+    interface Postings {
+
+        // moves to the next doc, false when exhausted
+        boolean next();
+
+        int doc();
+
+        int freq();
+    }
+}
@@ -0,0 +1,170 @@
+package com.substring.chat.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory part of a room's index for messages not yet flushed to a segment.
+ * Writers are serialized by {@link MessageSearchIndex}; queries read through
+ * {@link #snapshot}, which copies only what they need.
+ */
+final class Memtable {
+
+    // per doc: list entry, id set entry and the id string; per new term: map entry and string; per posting: two ints
+    private static final long DOC_BYTES = 160;
+    private static final long TERM_BYTES = 112;
+    private static final long POSTING_BYTES = 8;
+
+    private final List<Doc> docs = new ArrayList<>();
+    private final Set<String> ids = new HashSet<>();
+    private final TreeMap<String, IntList> postings = new TreeMap<>();
+    private long totalLength;
+    private long bytes;
+    private String oldestId; // ObjectId hex, so string order is id order
+
+    // false when the message is already here, e.g. persisted twice
+    synchronized boolean add(String messageId, long timeMillis, List<String> tokens) {
+        if (!ids.add(messageId)) {
+            return false;
+        }
+        if (oldestId == null || messageId.compareTo(oldestId) < 0) {
+            oldestId = messageId;
+        }
+        int doc = docs.size();
+        docs.add(new Doc(messageId, timeMillis, tokens.size()));
+        totalLength += tokens.size();
+        bytes += DOC_BYTES;
+        Map<String, Integer> freqs = new HashMap<>();
+        tokens.forEach(t -> freqs.merge(t, 1, Integer::sum));
+        freqs.forEach((term, freq) -> {
+            IntList list = postings.get(term);
+            if (list == null) {
+                list = new IntList();
+                postings.put(term, list);
+                bytes += TERM_BYTES + 2L * term.length();
+            }
+            list.add(doc, freq);
+            bytes += POSTING_BYTES;
+        });
+        return true;
+    }
+
+    synchronized int docCount() {
+        return docs.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized String oldestId() {
+        return oldestId;
+    }
+
+    // consistent copy of the docs and of the postings of the query terms
+    synchronized IndexSource snapshot(List<String> terms) {
+        Map<String, int[]> copied = new HashMap<>();
+        for (String term : terms) {
+            IntList list = postings.get(term);
+            if (list != null) {
+                copied.put(term, Arrays.copyOf(list.values, list.size));
+            }
+        }
+        return new Snapshot(docs.toArray(new Doc[0]), totalLength, copied);
+    }
+
+    // only once the memtable no longer changes
+    void writeTo(Segment.Writer writer) throws IOException {
+        for (Doc doc : docs) {
+            writer.addDoc(doc.messageId(), doc.timeMillis(), doc.length());
+        }
+        for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+            writer.startTerm(entry.getKey());
+            IntList list = entry.getValue();
+            for (int i = 0; i < list.size; i += 2) {
+                writer.addPosting(list.values[i], list.values[i + 1]);
+            }
+            writer.endTerm();
+        }
+    }
+
+    private record Doc(String messageId, long timeMillis, int length) {
+    }
+
+    // flat (doc, freq) pairs
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size + 2 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = doc;
+            values[size++] = freq;
+        }
+    }
+
+    private record Snapshot(Doc[] docs, long totalLength, Map<String, int[]> postings) implements IndexSource {
+
+        @Override
+        public int docCount() {
+            return docs.length;
+        }
+
+        @Override
+        public int docFreq(String term) {
+            int[] pairs = postings.get(term);
+            return pairs == null ? 0 : pairs.length / 2;
+        }
+
+        @Override
+        public Postings postings(String term) {
+            int[] pairs = postings.get(term);
+            if (pairs == null) {
+                return null;
+            }
+            return new Postings() {
+                private int at = -2;
+
+                @Override
+                public boolean next() {
+                    at += 2;
+                    return at < pairs.length;
+                }
+
+                @Override
+                public int doc() {
+                    return pairs[at];
+                }
+
+                @Override
+                public int freq() {
+                    return pairs[at + 1];
+                }
+            };
+        }
+
+        @Override
+        public String messageId(int doc) {
+            return docs[doc].messageId();
+        }
+
+        @Override
+        public long timeMillis(int doc) {
+            return docs[doc].timeMillis();
+        }
+
+        @Override
+        public int length(int doc) {
+            return docs[doc].length();
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package com.substring.chat.search;
+
+import com.substring.chat.entities.Message;
+import com.substring.chat.payload.SearchHit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Full-text search over room messages with an in-process inverted index.
+ * Messages go into a small in-memory table per room that is written out as an
+ * immutable on-disk segment when it grows past flushDocs, when all tables
+ * together exceed the memory budget, and periodically. A room with too many
+ * segments gets them merged into one.
+ * <p>
+ * The index follows the messages collection: a background thread tails it by
+ * _id (re-reading the last tailLagMs for messages persisted late), so every
+ * instance indexes every room whoever persisted the message. Messages this
+ * instance persists are also handed over right away, which only makes them
+ * searchable sooner. The first pass starts at the checkpoint (minus
+ * rebuildOverlapMs), or at the beginning without a usable checkpoint. Each
+ * periodic flush moves the checkpoint to where the tail has read, never past
+ * messages whose segment could not be written: those are read again.
+ * <p>
+ * Queries match all words and rank with BM25, newest first on ties.
+ */
+@Service
+@Slf4j
+public class MessageSearchIndex {
+
+    // bump when the tokenizer or the segment format changes; a mismatch rebuilds the index
+    static final int INDEX_VERSION = Segment.VERSION;
+    public static final int MAX_LIMIT = 100;
+    private static final String CHECKPOINT = "CHECKPOINT";
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int TAIL_BATCH = 500;
+    private static final int MAX_RECENT_IDS = 100_000;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final MongoTemplate mongoTemplate;
+    private final Path root;
+    private final ThreadPoolExecutor indexer;
+    private final Map<String, RoomIndex> rooms = new ConcurrentHashMap<>();
+    private final List<Path> obsolete = new ArrayList<>();
+    // ids indexed within the tail's re-read window, so re-reads and the direct hand-over add nothing twice
+    private final LinkedHashMap<String, Long> recentIds = new LinkedHashMap<>();
+    private final Timer queryTimer;
+    private final Timer flushTimer;
+    private final Counter indexed;
+    private final Counter dropped;
+
+    @Value("${chat.app.search.flushDocs:5000}")
+    private int flushDocs;
+
+    @Value("${chat.app.search.memtableBytes:33554432}")
+    private long memtableBudget;
+
+    @Value("${chat.app.search.maxSegments:8}")
+    private int maxSegments;
+
+    @Value("${chat.app.search.maxOpenRooms:10000}")
+    private int maxOpenRooms;
+
+    @Value("${chat.app.search.rebuildOverlapMs:600000}")
+    private long rebuildOverlapMs;
+
+    @Value("${chat.app.search.tailIntervalMs:2000}")
+    private long tailIntervalMs;
+
+    @Value("${chat.app.search.tailLagMs:10000}")
+    private long tailLagMs;
+
+    private volatile long memtableBytes;
+    private ObjectId rebuildFrom; // null: everything
+    private ObjectId tailMark; // newest id the tail has indexed, null before the first batch
+    private ObjectId rewindTo; // oldest id of a segment that could not be written
+    private volatile boolean rebuilding = true;
+    private volatile boolean running;
+    private Thread tailer;
+
+    public MessageSearchIndex(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+            @Value("${chat.app.search.dir:search-index}") String dir,
+            @Value("${chat.app.search.queueCapacity:1000}") int queueCapacity) {
+        this.mongoTemplate = mongoTemplate;
+        this.root = Path.of(dir).toAbsolutePath().normalize();
+        this.queryTimer = meterRegistry.timer("chat.search.query");
+        this.flushTimer = meterRegistry.timer("chat.search.flush");
+        this.indexed = meterRegistry.counter("chat.search.indexed");
+        this.dropped = meterRegistry.counter("chat.search.dropped");
+        meterRegistry.gauge("chat.search.memtable.bytes", this, s -> s.memtableBytes);
+        meterRegistry.gauge("chat.search.segments", this, MessageSearchIndex::getSegmentCount);
+        this.indexer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "search-indexer");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, pool) -> {
+                    int count = r instanceof IndexTask task ? task.messages().size() : 1;
+                    dropped.increment(count);
+                    log.debug("Search index queue full, {} messages left to the Mongo tail", count);
+                });
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        Files.createDirectories(root);
+        Properties checkpoint = readCheckpoint();
+        String version = checkpoint.getProperty("version");
+        String covered = checkpoint.getProperty("indexed");
+        if (String.valueOf(INDEX_VERSION).equals(version) && covered != null && ObjectId.isValid(covered)) {
+            long from = new ObjectId(covered).getDate().getTime() - rebuildOverlapMs;
+            rebuildFrom = ObjectId.getSmallestWithDate(new Date(Math.max(0, from)));
+        } else {
+            log.info("No usable search index checkpoint in {}, rebuilding the index from Mongo", root);
+            clear();
+        }
+    }
+
+    // off the main thread so a slow or unreachable Mongo never delays startup; live messages are indexed meanwhile
+    @EventListener(ApplicationReadyEvent.class)
+    public void startTail() {
+        running = true;
+        tailer = new Thread(this::tailLoop, "search-tail");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    // Indexes messages that were just persisted; the tail picks up whatever does not fit in the queue
+    public void index(List<Message> messages) {
+        if (!messages.isEmpty()) {
+            indexer.execute(new IndexTask(List.copyOf(messages)));
+        }
+    }
+
+    /**
+     * Top messages of the room containing every word of the query, best first.
+     * Throws IllegalArgumentException when the query has no searchable word.
+     */
+    public List<SearchHit> search(String roomId, String query, int limit) {
+        List<String> terms = Tokenizer.tokenize(query).stream().distinct().limit(MAX_QUERY_TERMS).toList();
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query needs a word of at least "
+                    + Tokenizer.MIN_LENGTH + " letters or digits");
+        }
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return queryTimer.record(() -> load(roomId, topHits(roomId, terms, k)));
+    }
+
+    public int getSegmentCount() {
+        return rooms.values().stream().mapToInt(RoomIndex::segmentCount).sum();
+    }
+
+    /**
+     * Writes out every room's memtable and, once the startup catch-up is done,
+     * moves the checkpoint to the newest message covered. Also deletes segments
+     * merged away by the previous round and forgets idle rooms beyond maxOpenRooms.
+     */
+    @Scheduled(fixedDelayString = "${chat.app.search.flushIntervalMs:30000}")
+    public synchronized void flushAll() {
+        deleteObsolete();
+        ObjectId covered = rewindTo != null && tailMark != null ? min(tailMark, rewindTo) : tailMark;
+        boolean complete = true;
+        for (RoomIndex room : rooms.values()) {
+            complete &= flush(room);
+        }
+        if (complete && !rebuilding && covered != null) {
+            writeCheckpoint(covered);
+        }
+        if (rooms.size() > maxOpenRooms) {
+            rooms.values().removeIf(RoomIndex::isIdle);
+        }
+    }
+
+    private synchronized void indexNow(List<Message> messages, boolean fromTail) {
+        for (Message m : messages) {
+            if (m.getId() == null || !ObjectId.isValid(m.getId()) || m.getRoomId() == null) {
+                continue;
+            }
+            ObjectId id = new ObjectId(m.getId());
+            if (fromTail && (tailMark == null || id.compareTo(tailMark) > 0)) {
+                tailMark = id;
+            }
+            if (recentIds.putIfAbsent(id.toHexString(), id.getDate().getTime()) != null) {
+                continue;
+            }
+            List<String> tokens = Tokenizer.tokenize(text(m));
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            RoomIndex room = rooms.computeIfAbsent(m.getRoomId(), r -> new RoomIndex(dirFor(r), true));
+            long before = room.memtableBytes();
+            if (room.add(id.toHexString(), timeMillis(m, id), tokens)) {
+                indexed.increment();
+            }
+            memtableBytes += room.memtableBytes() - before;
+            if (room.memtableDocs() >= flushDocs) {
+                flush(room);
+            }
+        }
+        while (memtableBytes > memtableBudget) {
+            RoomIndex largest = rooms.values().stream()
+                    .max(Comparator.comparingLong(RoomIndex::memtableBytes))
+                    .orElseThrow();
+            if (largest.memtableBytes() == 0) {
+                break;
+            }
+            flush(largest);
+        }
+        forgetOldIds();
+    }
+
+    // the tail re-reads from tailMark - tailLagMs, older ids cannot come around again through it
+    private void forgetOldIds() {
+        long cutoff = tailMark != null ? tailMark.getDate().getTime() - 2 * tailLagMs : Long.MIN_VALUE;
+        Iterator<Long> oldest = recentIds.values().iterator();
+        while (oldest.hasNext()) {
+            long time = oldest.next();
+            if (recentIds.size() <= MAX_RECENT_IDS && time >= cutoff) {
+                break;
+            }
+            oldest.remove();
+        }
+    }
+
+    private boolean flush(RoomIndex room) {
+        long bytes = room.memtableBytes();
+        if (bytes == 0) {
+            return true;
+        }
+        String oldest = room.memtableOldestId();
+        Timer.Sample sample = Timer.start();
+        try {
+            room.flush();
+        } catch (IOException | UncheckedIOException e) {
+            // the memtable is gone: read its messages again, and the ids they share with the window too
+            ObjectId lost = new ObjectId(oldest);
+            rewindTo = rewindTo != null ? min(rewindTo, lost) : lost;
+            recentIds.clear();
+            log.error("Writing search segment failed, its messages are read from Mongo again: {}", e.getMessage());
+            return false;
+        } finally {
+            memtableBytes -= bytes;
+            sample.stop(flushTimer);
+        }
+        try {
+            room.merge(maxSegments, obsolete);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Merging search segments failed, keeping them as they are: {}", e.getMessage());
+        }
+        return true;
+    }
+
+    private void tailLoop() {
+        boolean failing = false;
+        while (running) {
+            try {
+                long count = tail();
+                if (rebuilding) {
+                    rebuilding = false;
+                    flushAll();
+                    log.info("Search index caught up with {} messages from Mongo", count);
+                }
+                failing = false;
+            } catch (Exception e) {
+                if (!failing) {
+                    log.error("Tailing messages for the search index failed, retrying: {}", e.getMessage());
+                }
+                failing = true;
+            }
+            try {
+                Thread.sleep(tailIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // one pass over the messages collection from where the tail left off (a full pass the first time)
+    private long tail() {
+        ObjectId from = from();
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id"));
+        if (from != null) {
+            query.addCriteria(Criteria.where("id").gte(from));
+        }
+        long count = 0;
+        try (Stream<Message> messages = mongoTemplate.stream(query, Message.class)) {
+            Iterator<Message> it = messages.iterator();
+            List<Message> batch = new ArrayList<>(TAIL_BATCH);
+            while (running && it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() == TAIL_BATCH || !it.hasNext()) {
+                    indexNow(batch, true);
+                    count += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        return count;
+    }
+
+    private synchronized ObjectId from() {
+        if (rewindTo != null) {
+            tailMark = tailMark != null ? min(tailMark, rewindTo) : rewindTo;
+            rewindTo = null;
+        }
+        if (tailMark == null) {
+            return rebuildFrom;
+        }
+        return ObjectId.getSmallestWithDate(new Date(Math.max(0, tailMark.getDate().getTime() - tailLagMs)));
+    }
+
+    private static ObjectId min(ObjectId a, ObjectId b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private List<Hit> topHits(String roomId, List<String> terms, int k) {
+        RoomIndex room = rooms.get(roomId);
+        if (room == null) {
+            room = new RoomIndex(dirFor(roomId), false); // nothing indexed here since startup, segments only
+        }
+        List<IndexSource> sources;
+        try {
+            sources = room.sources(terms);
+        } catch (NoSuchFileException e) {
+            return List.of(); // merged away under us; rare enough to just report nothing
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // collection statistics over all sources, so scores are comparable between them
+        long docs = 0;
+        long totalLength = 0;
+        long[] docFreq = new long[terms.size()];
+        for (IndexSource source : sources) {
+            docs += source.docCount();
+            totalLength += source.totalLength();
+            for (int i = 0; i < terms.size(); i++) {
+                docFreq[i] += source.docFreq(terms.get(i));
+            }
+        }
+        double[] idf = new double[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            if (docFreq[i] == 0) {
+                return List.of();
+            }
+            idf[i] = Math.log(1 + (docs - docFreq[i] + 0.5) / (docFreq[i] + 0.5));
+        }
+        double avgLength = (double) totalLength / docs;
+
+        TopK top = new TopK(k);
+        for (IndexSource source : sources) {
+            score(source, terms, idf, avgLength, top);
+        }
+        return top.best();
+    }
+
+    // leapfrog intersection of the terms' postings, scoring docs that have all of them
+    private static void score(IndexSource source, List<String> terms, double[] idf, double avgLength, TopK top) {
+        IndexSource.Postings[] lists = new IndexSource.Postings[terms.size()];
+        int target = 0;
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = source.postings(terms.get(i));
+            if (lists[i] == null || !lists[i].next()) {
+                return;
+            }
+            target = Math.max(target, lists[i].doc());
+        }
+        while (true) {
+            boolean aligned = true;
+            for (IndexSource.Postings list : lists) {
+                while (list.doc() < target) {
+                    if (!list.next()) {
+                        return;
+                    }
+                }
+                if (list.doc() > target) {
+                    target = list.doc();
+                    aligned = false;
+                }
+            }
+            if (!aligned) {
+                continue;
+            }
+            double norm = K1 * (1 - B + B * source.length(target) / avgLength);
+            double score = 0;
+            for (int i = 0; i < lists.length; i++) {
+                int freq = lists[i].freq();
+                score += idf[i] * freq * (K1 + 1) / (freq + norm);
+            }
+            top.offer(source, target, score);
+            if (!lists[0].next()) {
+                return;
+            }
+            target = lists[0].doc();
+        }
+    }
+
+    private List<SearchHit> load(String roomId, List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        List<String> ids = hits.stream().map(Hit::messageId).toList();
+        Query query = new Query(Criteria.where("id").in(ids).and("roomId").is(roomId));
+        Map<String, Message> byId = mongoTemplate.find(query, Message.class).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity(), (a, b) -> a));
+        List<SearchHit> result = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            Message message = byId.get(hit.messageId());
+            if (message != null) {
+                result.add(new SearchHit(message, hit.score()));
+            }
+        }
+        return result;
+    }
+
+    private Path dirFor(String roomId) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(roomId.getBytes(StandardCharsets.UTF_8));
+            return root.resolve(HexFormat.of().formatHex(hash));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String text(Message m) {
+        if (m.getFileName() == null) {
+            return m.getContent();
+        }
+        return m.getContent() == null ? m.getFileName() : m.getContent() + " " + m.getFileName();
+    }
+
+    private static long timeMillis(Message m, ObjectId id) {
+        // timeStamp is server-local, like everywhere else it is turned into an instant
+        return m.getTimeStamp() != null
+                ? m.getTimeStamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : id.getDate().getTime();
+    }
+
+    private Properties readCheckpoint() {
+        Properties checkpoint = new Properties();
+        Path file = root.resolve(CHECKPOINT);
+        if (Files.exists(file)) {
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                checkpoint.load(in);
+            } catch (IOException e) {
+                log.warn("Unreadable search index checkpoint {}: {}", file, e.getMessage());
+            }
+        }
+        return checkpoint;
+    }
+
+    private void writeCheckpoint(ObjectId covered) {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("version", String.valueOf(INDEX_VERSION));
+        checkpoint.setProperty("indexed", covered.toHexString());
+        Path file = root.resolve(CHECKPOINT);
+        Path tmp = root.resolve(CHECKPOINT + ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                checkpoint.store(out, null);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Writing search index checkpoint failed: {}", e.getMessage());
+        }
+    }
+
+    // drops everything under root, checkpoint included, before a full rebuild
+    private void clear() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            List<Path> all = paths.sorted(Comparator.reverseOrder()).filter(p -> !p.equals(root)).toList();
+            for (Path path : all) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void deleteObsolete() {
+        obsolete.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false; // still open somewhere, next round
+            }
+        });
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (tailer != null) {
+            // not interrupted: that would close a segment file being written under it
+            tailer.join(tailIntervalMs + TimeUnit.SECONDS.toMillis(10));
+        }
+        indexer.shutdown();
+        indexer.awaitTermination(10, TimeUnit.SECONDS);
+        flushAll();
+        log.info("Search index stopped");
+    }
+
+    private final class IndexTask implements Runnable {
+        private final List<Message> messages;
+
+        IndexTask(List<Message> messages) {
+            this.messages = messages;
+        }
+
+        List<Message> messages() {
+            return messages;
+        }
+
+        @Override
+        public void run() {
+            indexNow(messages, false);
+        }
+    }
+
+    private record Hit(String messageId, double score, long timeMillis) {
+    }
+
+    // the k best hits by score, newer first on ties; a message in several sources counts once
+    private static final class TopK {
+        private static final Comparator<Hit> ORDER =
+                Comparator.comparingDouble(Hit::score).thenComparingLong(Hit::timeMillis);
+
+        private final int k;
+        private final PriorityQueue<Hit> heap = new PriorityQueue<>(ORDER);
+        private final Set<String> ids = new HashSet<>();
+
+        TopK(int k) {
+            this.k = k;
+        }
+
+        void offer(IndexSource source, int doc, double score) {
+            if (heap.size() == k && score < heap.peek().score()) {
+                return;
+            }
+            Hit hit = new Hit(source.messageId(doc), score, source.timeMillis(doc));
+            if (ids.contains(hit.messageId())) {
+                return;
+            }
+            if (heap.size() == k) {
+                if (ORDER.compare(hit, heap.peek()) <= 0) {
+                    return;
+                }
+                ids.remove(heap.poll().messageId());
+            }
+            heap.add(hit);
+            ids.add(hit.messageId());
+        }
+
+        List<Hit> best() {
+            List<Hit> best = new ArrayList<>(heap);
+            best.sort(ORDER.reversed());
+            return best;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.substring.chat.search;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * One room's index: the memtable taking new messages, the memtable being
+ * written out (still searchable meanwhile) and the room's segments on disk.
+ * Changes are serialized by {@link MessageSearchIndex}; queries run
+ * concurrently against whatever they see, so a message can show up in two
+ * sources for a moment and callers drop duplicates by message id.
+ */
+@Slf4j
+final class RoomIndex {
+
+    private static final String PREFIX = "seg-";
+    private static final String TMP = ".tmp";
+
+    private final Path dir;
+    private final boolean owner; // the instance writing to dir; read-only ones never clean up
+    private volatile Memtable active = new Memtable();
+    private volatile Memtable flushing;
+    private volatile List<Segment> segments; // copy-on-write, loaded on first use
+    private int nextNumber;
+
+    RoomIndex(Path dir, boolean owner) {
+        this.dir = dir;
+        this.owner = owner;
+    }
+
+    boolean add(String messageId, long timeMillis, List<String> tokens) {
+        return active.add(messageId, timeMillis, tokens);
+    }
+
+    int memtableDocs() {
+        return active.docCount();
+    }
+
+    long memtableBytes() {
+        return active.bytes();
+    }
+
+    String memtableOldestId() {
+        return active.oldestId();
+    }
+
+    boolean isIdle() {
+        return active.docCount() == 0 && flushing == null;
+    }
+
+    int segmentCount() {
+        List<Segment> loaded = segments;
+        return loaded != null ? loaded.size() : 0;
+    }
+
+    // newest first; the memtables are read before the segments they turn into
+    List<IndexSource> sources(List<String> terms) throws IOException {
+        List<IndexSource> sources = new ArrayList<>();
+        sources.add(active.snapshot(terms));
+        Memtable pending = flushing;
+        if (pending != null) {
+            sources.add(pending.snapshot(terms));
+        }
+        for (Segment segment : segments()) {
+            sources.add(segment.reader());
+        }
+        return sources;
+    }
+
+    /**
+     * Writes the memtable to a new segment. If that fails its messages are
+     * dropped rather than kept in memory indefinitely; the caller has them
+     * read from the store again.
+     */
+    void flush() throws IOException {
+        Memtable full = active;
+        if (full.docCount() == 0) {
+            return;
+        }
+        List<Segment> current = segments();
+        flushing = full;
+        active = new Memtable();
+        try {
+            Segment segment = write(full::writeTo);
+            segments = append(current, segment);
+        } finally {
+            flushing = null;
+        }
+    }
+
+    /**
+     * Merges all segments into one once there are more than maxSegments,
+     * keeping the number of files a query has to open bounded, and drops
+     * messages indexed more than once (the startup overlap re-reads some).
+     * Replaced files are handed back for deletion once running queries are
+     * done with them.
+     */
+    void merge(int maxSegments, List<Path> obsolete) throws IOException {
+        List<Segment> current = segments();
+        if (current.size() <= maxSegments) {
+            return;
+        }
+        List<Segment.Reader> readers = new ArrayList<>(current.size());
+        for (Segment segment : current) {
+            readers.add(segment.reader());
+        }
+        Segment merged = write(writer -> mergeInto(readers, writer));
+        segments = List.of(merged);
+        current.forEach(segment -> obsolete.add(segment.path));
+    }
+
+    private static void mergeInto(List<Segment.Reader> readers, Segment.Writer writer) throws IOException {
+        // old doc -> merged doc, -1 for a repeat of an id kept from an earlier position
+        int[][] docMap = firstOccurrences(readers);
+        for (int r = 0; r < readers.size(); r++) {
+            Segment.Reader reader = readers.get(r);
+            for (int doc = 0; doc < reader.docCount(); doc++) {
+                if (docMap[r][doc] >= 0) {
+                    writer.addDoc(reader.messageId(doc), reader.timeMillis(doc), reader.length(doc));
+                }
+            }
+        }
+        // k-way merge of the sorted term lists; equal terms come out in segment order, so docs stay ascending
+        PriorityQueue<TermCursor> cursors = new PriorityQueue<>(
+                Comparator.comparing(TermCursor::term).thenComparingInt(TermCursor::reader));
+        for (int r = 0; r < readers.size(); r++) {
+            if (readers.get(r).termCount() > 0) {
+                cursors.add(new TermCursor(r, 0, readers.get(r).term(0)));
+            }
+        }
+        while (!cursors.isEmpty()) {
+            String term = cursors.peek().term();
+            writer.startTerm(term);
+            while (!cursors.isEmpty() && cursors.peek().term().equals(term)) {
+                TermCursor cursor = cursors.poll();
+                Segment.Reader reader = readers.get(cursor.reader());
+                IndexSource.Postings postings = reader.postingsAt(cursor.index());
+                while (postings.next()) {
+                    int doc = docMap[cursor.reader()][postings.doc()];
+                    if (doc >= 0) {
+                        writer.addPosting(doc, postings.freq());
+                    }
+                }
+                int next = cursor.index() + 1;
+                if (next < reader.termCount()) {
+                    cursors.add(new TermCursor(cursor.reader(), next, reader.term(next)));
+                }
+            }
+            writer.endTerm();
+        }
+    }
+
+    /**
+     * Numbers the docs of all readers in order, skipping ids seen before.
+     * Only 64-bit hashes of all ids are held; ids are compared in full just
+     * for hashes that occur more than once.
+     */
+    private static int[][] firstOccurrences(List<Segment.Reader> readers) {
+        int total = 0;
+        for (Segment.Reader reader : readers) {
+            total += reader.docCount();
+        }
+        long[] hashes = new long[total];
+        int at = 0;
+        for (Segment.Reader reader : readers) {
+            for (int doc = 0; doc < reader.docCount(); doc++) {
+                hashes[at++] = reader.idHash(doc);
+            }
+        }
+        long[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        Set<Long> repeated = new HashSet<>();
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                repeated.add(sorted[i]);
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        int[][] docMap = new int[readers.size()][];
+        int next = 0;
+        at = 0;
+        for (int r = 0; r < readers.size(); r++) {
+            Segment.Reader reader = readers.get(r);
+            docMap[r] = new int[reader.docCount()];
+            for (int doc = 0; doc < reader.docCount(); doc++) {
+                boolean repeat = repeated.contains(hashes[at++]) && !seen.add(reader.messageId(doc));
+                docMap[r][doc] = repeat ? -1 : next++;
+            }
+        }
+        return docMap;
+    }
+
+    // written under a temporary name and renamed once complete, so a crash never leaves a partial segment
+    private Segment write(SegmentContent content) throws IOException {
+        Files.createDirectories(dir);
+        Path target = dir.resolve(String.format("%s%08d%s", PREFIX, nextNumber++, Segment.SUFFIX));
+        Path tmp = target.resolveSibling(target.getFileName() + TMP);
+        try (Segment.Writer writer = new Segment.Writer(tmp)) {
+            content.writeTo(writer);
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        return Segment.open(target);
+    }
+
+    private synchronized List<Segment> segments() throws IOException {
+        if (segments != null) {
+            return segments;
+        }
+        List<Segment> loaded = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(dir)) {
+                files = listing.sorted().toList();
+            }
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP)) {
+                    if (owner) {
+                        Files.deleteIfExists(file); // left behind by a crash
+                    }
+                    continue;
+                }
+                if (!name.startsWith(PREFIX) || !name.endsWith(Segment.SUFFIX)) {
+                    continue;
+                }
+                try {
+                    int number = Integer.parseInt(name.substring(PREFIX.length(), name.length() - Segment.SUFFIX.length()));
+                    loaded.add(Segment.open(file));
+                    nextNumber = Math.max(nextNumber, number + 1);
+                } catch (IOException | NumberFormatException e) {
+                    log.warn("Skipping unreadable search segment {}: {}", file, e.getMessage());
+                    if (owner) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        segments = List.copyOf(loaded);
+        return segments;
+    }
+
+    private static List<Segment> append(List<Segment> current, Segment segment) {
+        List<Segment> next = new ArrayList<>(current);
+        next.add(segment);
+        return List.copyOf(next);
+    }
+
+    private interface SegmentContent {
+        void writeTo(Segment.Writer writer) throws IOException;
+    }
+
+    private record TermCursor(int reader, int index, String term) {
+    }
+}
@@ -0,0 +1,338 @@
+package com.substring.chat.search;
+
+import org.bson.types.ObjectId;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable on-disk part of a room's index.
+ *
+ * <pre>
+ * header   magic version docCount termCount totalLength postingsOffset termsOffset termTableOffset
+ * docs     docCount x (messageId:12 raw ObjectId bytes, timeMillis:8, length:4)
+ * postings per term: (docDelta:varint, freq:varint)*
+ * terms    per term in sorted order: (utf8Length:2, utf8, docFreq:4, postingsStart:8, postingsLength:4)
+ * table    termCount x termStart:8, for binary search
+ * </pre>
+ * Readers map the file per query, so segments cost no heap beyond the header.
+ */
+final class Segment {
+
+    static final int MAGIC = 0x43565349; // "CVSI"
+    static final int VERSION = 1;
+    static final String SUFFIX = ".seg";
+
+    private static final int HEADER_BYTES = 48;
+    private static final int DOC_BYTES = 24;
+
+    final Path path;
+    final int docCount;
+    final int termCount;
+    final long totalLength;
+    private final long postingsOffset;
+    private final long termsOffset;
+    private final long termTableOffset;
+
+    private Segment(Path path, ByteBuffer header) throws IOException {
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a search segment of version " + VERSION + ": " + path);
+        }
+        this.path = path;
+        this.docCount = header.getInt();
+        this.termCount = header.getInt();
+        this.totalLength = header.getLong();
+        this.postingsOffset = header.getLong();
+        this.termsOffset = header.getLong();
+        this.termTableOffset = header.getLong();
+    }
+
+    static Segment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Truncated search segment: " + path);
+                }
+            }
+            return new Segment(path, header.flip());
+        }
+    }
+
+    Reader reader() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    final class Reader implements IndexSource {
+
+        private final MappedByteBuffer buf;
+
+        private Reader(MappedByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int docCount() {
+            return docCount;
+        }
+
+        @Override
+        public long totalLength() {
+            return totalLength;
+        }
+
+        @Override
+        public int docFreq(String term) {
+            int entry = find(term);
+            return entry < 0 ? 0 : buf.getInt(entry + 2 + (buf.getShort(entry) & 0xFFFF));
+        }
+
+        @Override
+        public Postings postings(String term) {
+            int entry = find(term);
+            if (entry < 0) {
+                return null;
+            }
+            int at = entry + 2 + (buf.getShort(entry) & 0xFFFF);
+            int df = buf.getInt(at);
+            int start = (int) buf.getLong(at + 4);
+            return new VarIntPostings(buf, start, df);
+        }
+
+        @Override
+        public String messageId(int doc) {
+            byte[] id = new byte[12];
+            buf.get(HEADER_BYTES + doc * DOC_BYTES, id);
+            return new ObjectId(id).toHexString();
+        }
+
+        // mixes the 12 raw id bytes; equal ids hash equal
+        long idHash(int doc) {
+            int at = HEADER_BYTES + doc * DOC_BYTES;
+            return buf.getLong(at) * 0x9E3779B97F4A7C15L ^ buf.getInt(at + 8);
+        }
+
+        @Override
+        public long timeMillis(int doc) {
+            return buf.getLong(HEADER_BYTES + doc * DOC_BYTES + 12);
+        }
+
+        @Override
+        public int length(int doc) {
+            return buf.getInt(HEADER_BYTES + doc * DOC_BYTES + 20);
+        }
+
+        int termCount() {
+            return termCount;
+        }
+
+        // every term of the segment in sorted order, for merging
+        String term(int index) {
+            return termAt(termStart(index));
+        }
+
+        Postings postingsAt(int index) {
+            int entry = termStart(index);
+            int at = entry + 2 + (buf.getShort(entry) & 0xFFFF);
+            return new VarIntPostings(buf, (int) buf.getLong(at + 4), buf.getInt(at));
+        }
+
+        private int termStart(int index) {
+            return (int) buf.getLong((int) termTableOffset + index * 8);
+        }
+
+        private String termAt(int entry) {
+            byte[] utf8 = new byte[buf.getShort(entry) & 0xFFFF];
+            buf.get(entry + 2, utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        private int find(String term) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int entry = termStart(mid);
+                int cmp = termAt(entry).compareTo(term);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class VarIntPostings implements IndexSource.Postings {
+
+        private final ByteBuffer buf;
+        private int pos;
+        private int remaining;
+        private int doc = -1;
+        private int freq;
+
+        VarIntPostings(ByteBuffer buf, int start, int count) {
+            this.buf = buf;
+            this.pos = start;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            doc = (doc < 0 ? 0 : doc) + readVarInt();
+            freq = readVarInt();
+            return true;
+        }
+
+        @Override
+        public int doc() {
+            return doc;
+        }
+
+        @Override
+        public int freq() {
+            return freq;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf.get(pos++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams a new segment to a file: all docs first, then terms in sorted
+     * order with their postings in doc order.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path path;
+        private final DataOutputStream out;
+        private final List<TermEntry> terms = new ArrayList<>();
+        private long position = HEADER_BYTES;
+        private long postingsOffset = -1;
+        private int docCount;
+        private long totalLength;
+        private String term;
+        private long termStart;
+        private int termDocFreq;
+        private int lastDoc;
+
+        Writer(Path path) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+            out.write(new byte[HEADER_BYTES]); // filled in by finish()
+        }
+
+        void addDoc(String messageId, long timeMillis, int length) throws IOException {
+            out.write(new ObjectId(messageId).toByteArray());
+            out.writeLong(timeMillis);
+            out.writeInt(length);
+            position += DOC_BYTES;
+            docCount++;
+            totalLength += length;
+        }
+
+        void startTerm(String term) {
+            if (postingsOffset < 0) {
+                postingsOffset = position;
+            }
+            this.term = term;
+            this.termStart = position;
+            this.termDocFreq = 0;
+            this.lastDoc = 0;
+        }
+
+        void addPosting(int doc, int freq) throws IOException {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(freq);
+            lastDoc = doc;
+            termDocFreq++;
+        }
+
+        void endTerm() {
+            if (termDocFreq > 0) {
+                terms.add(new TermEntry(term, termDocFreq, termStart, (int) (position - termStart)));
+            }
+        }
+
+        void finish() throws IOException {
+            if (postingsOffset < 0) {
+                postingsOffset = position;
+            }
+            long termsOffset = position;
+            long[] starts = new long[terms.size()];
+            for (int i = 0; i < terms.size(); i++) {
+                TermEntry entry = terms.get(i);
+                starts[i] = position;
+                byte[] utf8 = entry.term().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(utf8.length);
+                out.write(utf8);
+                out.writeInt(entry.docFreq());
+                out.writeLong(entry.start());
+                out.writeInt(entry.length());
+                position += 2 + utf8.length + 4 + 8 + 4;
+            }
+            long termTableOffset = position;
+            for (long start : starts) {
+                out.writeLong(start);
+            }
+            out.close();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(docCount).putInt(terms.size())
+                    .putLong(totalLength).putLong(postingsOffset).putLong(termsOffset).putLong(termTableOffset)
+                    .flip();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+                position++;
+            }
+            out.writeByte(value);
+            position++;
+        }
+
+        private record TermEntry(String term, int docFreq, long start, int length) {
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.substring.chat.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Lower-cased runs of letters and digits; very short or long runs and text past MAX_TOKENS are ignored
+final class Tokenizer {
+
+    static final int MIN_LENGTH = 2;
+    static final int MAX_LENGTH = 40;
+    static final int MAX_TOKENS = 512;
+
+    private Tokenizer() {
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length() && tokens.size() < MAX_TOKENS; i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_LENGTH && length <= MAX_LENGTH) {
+                    tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
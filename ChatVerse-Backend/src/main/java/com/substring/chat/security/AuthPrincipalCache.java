@@ -0,0 +1,66 @@
+package com.substring.chat.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of verified token -> principal. An entry lives for the TTL but
+ * never past the token's own expiry, so a hit skips both the JWT parse and the
+ * user lookup without extending a token's validity.
+ */
+@Component
+public class AuthPrincipalCache {
+
+    private final long ttlMs;
+    private final Map<String, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public AuthPrincipalCache(@Value("${chat.app.auth.cacheSize:10000}") int maxSize,
+            @Value("${chat.app.auth.cacheTtlMs:300000}") long ttlMs,
+            MeterRegistry meterRegistry) {
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.hits = Counter.builder("chat.auth.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.auth.cache").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("chat.auth.cache.size", this, AuthPrincipalCache::size);
+    }
+
+    public UserDetails get(String token) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(token);
+            if (entry != null && entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(token);
+                entry = null;
+            }
+        }
+        (entry != null ? hits : misses).increment();
+        return entry != null ? entry.principal() : null;
+    }
+
+    public void put(String token, UserDetails principal, long tokenExpiresAt) {
+        long expiresAt = Math.min(System.currentTimeMillis() + ttlMs, tokenExpiresAt);
+        synchronized (this) {
+            entries.put(token, new Entry(principal, expiresAt));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry(UserDetails principal, long expiresAt) {
+    }
+}
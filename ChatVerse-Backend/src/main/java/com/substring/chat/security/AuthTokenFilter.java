@@ -1,5 +1,8 @@
 package com.substring.chat.security;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,17 +26,22 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private AuthPrincipalCache principalCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails = jwt != null ? resolvePrincipal(jwt) : null;
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -44,11 +52,29 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
+        } finally {
+            sample.stop(meterRegistry.timer("chat.auth.latency"));
         }
 
         filterChain.doFilter(request, response);
     }
 
+    // Cache hit: no JWT parse and no Mongo lookup. Miss: one parse, one lookup, then cached.
+    private UserDetails resolvePrincipal(String jwt) {
+        UserDetails cached = principalCache.get(jwt);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = jwtUtils.parseValidClaims(jwt);
+        if (claims == null) {
+            return null;
+        }
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        principalCache.put(jwt, userDetails, expiresAt);
+        return userDetails;
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
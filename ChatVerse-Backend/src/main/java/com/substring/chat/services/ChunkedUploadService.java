@@ -0,0 +1,163 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.UploadSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: init reserves a preallocated part file, each chunk is
+ * written at its own offset with positional writes (so chunks may arrive in
+ * parallel and in any order), and finalize hashes the file and hands it to
+ * the content-addressed store. Received chunks are tracked in Mongo so a
+ * client can ask what is missing and resume after a failure or restart.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final FileStorageService fileStorageService;
+
+    @Value("${chat.app.files.chunkSize:5242880}")
+    private int chunkSize;
+
+    @Value("${chat.app.files.maxUploadBytes:2147483648}")
+    private long maxUploadBytes;
+
+    @Value("${chat.app.files.uploadExpiryMs:86400000}")
+    private long uploadExpiryMs;
+
+    public ChunkedUploadService(MongoTemplate mongoTemplate, FileStorageService fileStorageService) {
+        this.mongoTemplate = mongoTemplate;
+        this.fileStorageService = fileStorageService;
+    }
+
+    public UploadSession init(String fileName, String contentType, long size) throws IOException {
+        if (size <= 0 || size > maxUploadBytes) {
+            throw new IllegalArgumentException("File size must be between 1 and " + maxUploadBytes + " bytes");
+        }
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setFileName(fileName);
+        session.setContentType(contentType);
+        session.setSize(size);
+        session.setChunkSize(chunkSize);
+        session.setCreatedAt(LocalDateTime.now());
+
+        Path part = partFile(session.getId());
+        Files.createDirectories(part.getParent());
+        try (RandomAccessFile file = new RandomAccessFile(part.toFile(), "rw")) {
+            file.setLength(size); // preallocate so chunks can land anywhere
+        }
+        return mongoTemplate.insert(session);
+    }
+
+    public UploadSession writeChunk(String uploadId, long offset, InputStream body) throws IOException {
+        UploadSession session = get(uploadId);
+        if (offset < 0 || offset >= session.getSize() || offset % session.getChunkSize() != 0) {
+            throw new IllegalArgumentException("Offset must be a multiple of " + session.getChunkSize()
+                    + " within the file");
+        }
+        int index = (int) (offset / session.getChunkSize());
+        long expected = Math.min(session.getChunkSize(), session.getSize() - offset);
+
+        long written = 0;
+        try (ReadableByteChannel in = Channels.newChannel(body);
+             FileChannel out = FileChannel.open(partFile(uploadId), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                if (written + buffer.remaining() > expected) {
+                    throw new IllegalArgumentException("Chunk " + index + " is larger than " + expected + " bytes");
+                }
+                while (buffer.hasRemaining()) {
+                    written += out.write(buffer, offset + written);
+                }
+                buffer.clear();
+            }
+        }
+        if (written != expected) {
+            throw new IllegalArgumentException("Chunk " + index + " has " + written + " bytes, expected " + expected);
+        }
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(uploadId)),
+                new Update().addToSet("receivedChunks", index), UploadSession.class);
+        session.getReceivedChunks().add(index);
+        return session;
+    }
+
+    public UploadSession get(String uploadId) {
+        UploadSession session = mongoTemplate.findById(uploadId, UploadSession.class);
+        if (session == null) {
+            throw new IllegalArgumentException("Unknown upload: " + uploadId);
+        }
+        return session;
+    }
+
+    public FileStorageService.StoredFile complete(String uploadId) throws IOException {
+        UploadSession session = get(uploadId);
+        if (!session.isComplete()) {
+            throw new IllegalArgumentException("Upload incomplete: " + session.getReceivedChunks().size()
+                    + " of " + session.getChunkCount() + " chunks received");
+        }
+        Path part = partFile(uploadId);
+        MessageDigest digest = FileStorageService.sha256();
+        try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        FileStorageService.StoredFile stored = fileStorageService.commit(part,
+                HexFormat.of().formatHex(digest.digest()), session.getSize(),
+                session.getFileName(), session.getContentType());
+        mongoTemplate.remove(session);
+        return stored;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.app.files.uploadExpiryMs:86400000}",
+            initialDelayString = "${chat.app.files.uploadExpiryMs:86400000}")
+    public void expireAbandoned() {
+        Query abandoned = new Query(Criteria.where("createdAt")
+                .lt(LocalDateTime.now().minusNanos(uploadExpiryMs * 1_000_000)));
+        for (UploadSession session : mongoTemplate.findAllAndRemove(abandoned, UploadSession.class)) {
+            try {
+                Files.deleteIfExists(partFile(session.getId()));
+            } catch (IOException e) {
+                log.error("Could not delete part file of upload {}: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private Path partFile(String uploadId) {
+        if (!uploadId.matches("[0-9a-f-]{36}")) {
+            throw new IllegalArgumentException("Invalid upload id");
+        }
+        return fileStorageService.getRoot().resolve("tmp").resolve(uploadId + ".part");
+    }
+}
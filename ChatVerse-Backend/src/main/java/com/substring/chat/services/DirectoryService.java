@@ -0,0 +1,102 @@
+package com.substring.chat.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.substring.chat.entities.Room;
+import com.substring.chat.entities.User;
+import com.substring.chat.payload.UserSummary;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * User and room directories: paged, prefix-searchable and projected so only
+ * the returned fields are read. Exports stream NDJSON straight from a Mongo
+ * cursor instead of materializing the collection.
+ */
+@Service
+public class DirectoryService {
+
+    public static final int MAX_PAGE_SIZE = 200;
+    private static final int FLUSH_EVERY = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    public DirectoryService(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public List<UserSummary> users(String prefix, int page, int size) {
+        return mongoTemplate.query(User.class).as(UserSummary.class)
+                .matching(paged(userQuery(prefix), page, size))
+                .all();
+    }
+
+    public List<Room> rooms(String prefix, int page, int size) {
+        return mongoTemplate.find(paged(roomQuery(prefix), page, size), Room.class);
+    }
+
+    public void exportUsers(OutputStream out) {
+        try (Stream<UserSummary> users = mongoTemplate.query(User.class).as(UserSummary.class)
+                .matching(userQuery(null)).stream()) {
+            writeNdjson(users, out);
+        }
+    }
+
+    public void exportRooms(OutputStream out) {
+        try (Stream<Room> rooms = mongoTemplate.stream(roomQuery(null), Room.class)) {
+            writeNdjson(rooms, out);
+        }
+    }
+
+    // anchored, case-sensitive prefix regexes can use the email/name and roomId indexes
+    private Query userQuery(String prefix) {
+        Query query = new Query().with(Sort.by("email"));
+        if (prefix != null && !prefix.isBlank()) {
+            Pattern pattern = Pattern.compile("^" + Pattern.quote(prefix));
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("email").regex(pattern),
+                    Criteria.where("name").regex(pattern)));
+        }
+        return query;
+    }
+
+    private Query roomQuery(String prefix) {
+        Query query = new Query().with(Sort.by("roomId"));
+        if (prefix != null && !prefix.isBlank()) {
+            query.addCriteria(Criteria.where("roomId").regex(Pattern.compile("^" + Pattern.quote(prefix))));
+        }
+        query.fields().include("roomId", "roomName");
+        return query;
+    }
+
+    private Query paged(Query query, int page, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return query.skip((long) Math.max(page, 0) * limit).limit(limit);
+    }
+
+    private void writeNdjson(Stream<?> items, OutputStream out) {
+        int[] written = {0};
+        items.forEach(item -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(item));
+                out.write('\n');
+                if (++written[0] % FLUSH_EVERY == 0) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
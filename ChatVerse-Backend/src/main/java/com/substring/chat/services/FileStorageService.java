@@ -0,0 +1,206 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.FileBlob;
+import com.substring.chat.entities.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Content-addressed attachment storage. Uploads stream through an NIO channel
+ * into a temp file while being hashed; the SHA-256 becomes the blob name, so
+ * a repeated upload of the same bytes only touches metadata. Blobs are marked
+ * referenced when a message pointing at them is persisted (messages are never
+ * deleted, so the mark is permanent); unreferenced blobs are collected once
+ * they are older than the grace period, which a repeated upload restarts.
+ */
+@Service
+@Slf4j
+public class FileStorageService {
+
+    public static final String URL_PREFIX = "/uploads/";
+    private static final String BLOB_DIR = "blobs";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final Path root;
+
+    @Value("${chat.app.files.orphanGraceMs:3600000}")
+    private long orphanGraceMs;
+
+    public FileStorageService(MongoTemplate mongoTemplate, @Value("${chat.app.files.dir:uploads}") String uploadDir) {
+        this.mongoTemplate = mongoTemplate;
+        this.root = Paths.get(uploadDir).toAbsolutePath();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public StoredFile store(InputStream content, String originalName, String contentType) throws IOException {
+        Path tmpDir = Files.createDirectories(root.resolve("tmp"));
+        Path tmp = tmpDir.resolve(UUID.randomUUID().toString());
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (ReadableByteChannel in = Channels.newChannel(content);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return commit(tmp, HexFormat.of().formatHex(digest.digest()), size, originalName, contentType);
+    }
+
+    /**
+     * Moves a fully written temp file into the blob store under its hash,
+     * or drops it if the same content is already stored.
+     */
+    public StoredFile commit(Path tmp, String hash, long size, String originalName, String contentType)
+            throws IOException {
+        FileBlob existing = mongoTemplate.findById(hash, FileBlob.class);
+        if (existing != null) {
+            Files.deleteIfExists(tmp);
+            touch(hash); // the message sending it follows, keep it out of GC until then
+            return new StoredFile(existing, true);
+        }
+
+        String relative = BLOB_DIR + "/" + hash.substring(0, 2) + "/" + hash + extensionOf(originalName);
+        Path target = root.resolve(relative);
+        Files.createDirectories(target.getParent());
+        boolean moved = false;
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(tmp); // same bytes already on disk
+        }
+
+        FileBlob blob = new FileBlob(hash, relative, size, contentType, false, null, LocalDateTime.now());
+        try {
+            mongoTemplate.insert(blob);
+        } catch (DuplicateKeyException e) {
+            // a concurrent upload of the same content won
+            touch(hash);
+            return new StoredFile(mongoTemplate.findById(hash, FileBlob.class), true);
+        } catch (RuntimeException e) {
+            if (moved) {
+                Files.deleteIfExists(target); // no metadata would ever point at it
+            }
+            throw e;
+        }
+        return new StoredFile(blob, false);
+    }
+
+    public String urlOf(FileBlob blob) {
+        return URL_PREFIX + blob.getPath();
+    }
+
+    /**
+     * Marks the blobs behind the messages' file urls as referenced, one update
+     * per persisted batch. Non-blob urls are ignored.
+     */
+    public void markReferenced(Collection<Message> messages) {
+        Set<String> hashes = new HashSet<>();
+        for (Message message : messages) {
+            String hash = hashOf(message.getFileUrl());
+            if (hash != null) {
+                hashes.add(hash);
+            }
+        }
+        if (!hashes.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(hashes).and("referenced").ne(true)),
+                    new Update().set("referenced", true), FileBlob.class);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.app.files.gcIntervalMs:3600000}",
+            initialDelayString = "${chat.app.files.gcIntervalMs:3600000}")
+    public void collectGarbage() {
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(orphanGraceMs * 1_000_000);
+        Query orphans = new Query(Criteria.where("referenced").ne(true).and("createdAt").lt(cutoff));
+        for (FileBlob blob : mongoTemplate.find(orphans, FileBlob.class)) {
+            // re-check atomically: a message may have claimed it, or an upload touched it, since the query
+            Query stillOrphan = new Query(Criteria.where("_id").is(blob.getId())
+                    .and("referenced").ne(true).and("createdAt").lt(cutoff));
+            if (mongoTemplate.remove(stillOrphan, FileBlob.class).getDeletedCount() == 1) {
+                try {
+                    Files.deleteIfExists(root.resolve(blob.getPath()));
+                    if (blob.getThumbnailPath() != null) {
+                        Files.deleteIfExists(root.resolve(blob.getThumbnailPath()));
+                    }
+                    log.info("Collected orphan blob {}", blob.getId());
+                } catch (IOException e) {
+                    log.error("Could not delete blob file {}: {}", blob.getPath(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void touch(String hash) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(hash)),
+                new Update().set("createdAt", LocalDateTime.now()), FileBlob.class);
+    }
+
+    public String hashOf(String fileUrl) {
+        String blobPrefix = URL_PREFIX + BLOB_DIR + "/";
+        if (fileUrl == null || !fileUrl.startsWith(blobPrefix)) {
+            return null;
+        }
+        String name = fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static String extensionOf(String originalName) {
+        String ext = StringUtils.getFilenameExtension(originalName);
+        return ext != null && ext.matches("[A-Za-z0-9]{1,10}") ? "." + ext.toLowerCase() : "";
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record StoredFile(FileBlob blob, boolean deduplicated) {
+    }
+}
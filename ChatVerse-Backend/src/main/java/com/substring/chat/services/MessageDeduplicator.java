@@ -0,0 +1,40 @@
+package com.substring.chat.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded memory of recently handled message ids. Lets the Kafka path skip
+ * messages this instance already broadcast and queued at ingest; the oldest
+ * ids are evicted first once the capacity is reached.
+ */
+@Component
+public class MessageDeduplicator {
+
+    private final Map<String, Boolean> recentIds;
+
+    public MessageDeduplicator(@Value("${chat.app.dedup.capacity:50000}") int capacity) {
+        this.recentIds = new LinkedHashMap<>(capacity, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // true the first time an id is seen, false for repeats still in the window
+    public synchronized boolean markSeen(String messageId) {
+        return recentIds.putIfAbsent(messageId, Boolean.TRUE) == null;
+    }
+
+    public synchronized boolean isSeen(String messageId) {
+        return recentIds.containsKey(messageId);
+    }
+
+    public synchronized int size() {
+        return recentIds.size();
+    }
+}
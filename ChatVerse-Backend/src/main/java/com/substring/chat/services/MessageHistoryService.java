@@ -0,0 +1,147 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.Message;
+import com.substring.chat.payload.MessageCursor;
+import com.substring.chat.payload.MessageDelta;
+import com.substring.chat.payload.MessagePage;
+import com.substring.chat.repositories.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyset pagination over a room's messages. Every query is an index range scan
+ * on (roomId, timeStamp, _id) bounded by limit + 1, so a page never touches the
+ * rest of the room no matter how large it is. The latest messages and
+ * reconnect catch-up by sequence number are answered from the
+ * RecentMessageBuffer when it has all of them.
+ */
+@Service
+public class MessageHistoryService {
+
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepository;
+    private final RecentMessageBuffer recentBuffer;
+    private final Counter resumedFromBuffer;
+    private final Counter resumedFromStore;
+
+    public MessageHistoryService(MongoTemplate mongoTemplate, MessageRepository messageRepository,
+            RecentMessageBuffer recentBuffer, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageRepository = messageRepository;
+        this.recentBuffer = recentBuffer;
+        this.resumedFromBuffer = meterRegistry.counter("chat.resume", "source", "buffer");
+        this.resumedFromStore = meterRegistry.counter("chat.resume", "source", "store");
+    }
+
+    /**
+     * Latest N messages, oldest -> newest. Served from the room's recent ring
+     * when it can; on a miss one full ring's worth is read and seeds it, so the
+     * next open of the room does not query at all.
+     */
+    public List<Message> latest(String roomId, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Message> cached = recentBuffer.latest(roomId, size);
+        if (cached != null) {
+            return cached;
+        }
+        int fetch = Math.max(size, Math.min(recentBuffer.getCapacity(), MAX_PAGE_SIZE));
+        MessagePage page = page(roomId, null, null, fetch);
+        List<Message> history = page.getMessages();
+        recentBuffer.seed(roomId, history, !page.isHasMore());
+        return history.size() > size ? new ArrayList<>(history.subList(history.size() - size, history.size())) : history;
+    }
+
+    /**
+     * @param before cursor token, ISO timestamp or message id; page goes back in time from it
+     * @param after  same formats; page goes forward in time from it (ignored when before is set)
+     */
+    public MessagePage page(String roomId, String before, String after, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        boolean forward = before == null && after != null;
+        MessageCursor cursor = resolveCursor(roomId, forward ? after : before);
+
+        Criteria criteria = Criteria.where("roomId").is(roomId);
+        if (cursor != null) {
+            criteria = criteria.andOperator(boundary(cursor, forward));
+        }
+        Sort.Direction direction = forward ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Query query = new Query(criteria)
+                .with(Sort.by(direction, "timeStamp").and(Sort.by(direction, "id")))
+                .limit(size + 1);
+
+        List<Message> found = new ArrayList<>(mongoTemplate.find(query, Message.class));
+        boolean hasMore = found.size() > size;
+        if (hasMore) {
+            found = found.subList(0, size);
+        }
+        String nextCursor = hasMore ? MessageCursor.of(found.get(found.size() - 1)).encode() : null;
+        if (!forward) {
+            Collections.reverse(found);
+        }
+        return new MessagePage(found, nextCursor, hasMore);
+    }
+
+    /**
+     * Messages of the room with seq greater than afterSeq, i.e. what a client
+     * that last saw afterSeq has missed. Messages without a seq are never included.
+     */
+    public MessageDelta since(String roomId, long afterSeq, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Message> found = recentBuffer.since(roomId, afterSeq, size + 1);
+        if (found != null) {
+            resumedFromBuffer.increment();
+        } else {
+            resumedFromStore.increment();
+            Query query = new Query(Criteria.where("roomId").is(roomId).and("seq").gt(afterSeq))
+                    .with(Sort.by(Sort.Direction.ASC, "seq"))
+                    .limit(size + 1);
+            found = mongoTemplate.find(query, Message.class);
+        }
+        boolean hasMore = found.size() > size;
+        if (hasMore) {
+            found = found.subList(0, size);
+        }
+        long lastSeq = found.isEmpty() ? afterSeq : found.get(found.size() - 1).getSeq();
+        return new MessageDelta(new ArrayList<>(found), lastSeq, hasMore);
+    }
+
+    private MessageCursor resolveCursor(String roomId, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        if (MessageCursor.isMessageId(value)) {
+            Message anchor = messageRepository.findById(value)
+                    .filter(m -> roomId.equals(m.getRoomId()))
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown message id: " + value));
+            return MessageCursor.of(anchor);
+        }
+        return MessageCursor.decode(value);
+    }
+
+    private Criteria boundary(MessageCursor cursor, boolean forward) {
+        if (cursor.getId() == null) {
+            return forward ? Criteria.where("timeStamp").gt(cursor.getTimeStamp())
+                    : Criteria.where("timeStamp").lt(cursor.getTimeStamp());
+        }
+        Criteria sameTime = Criteria.where("timeStamp").is(cursor.getTimeStamp());
+        if (forward) {
+            return new Criteria().orOperator(
+                    Criteria.where("timeStamp").gt(cursor.getTimeStamp()),
+                    sameTime.and("id").gt(cursor.getId()));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("timeStamp").lt(cursor.getTimeStamp()),
+                sameTime.and("id").lt(cursor.getId()));
+    }
+}
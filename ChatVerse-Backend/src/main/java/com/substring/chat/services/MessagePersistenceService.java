@@ -0,0 +1,280 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.Message;
+import com.substring.chat.search.MessageSearchIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for chat messages.
+ * Callers broadcast first and enqueue here; a single writer thread drains the
+ * bounded queue into Mongo bulk inserts (flushed on batch size or linger time)
+ * and acks each message to its sender's session once it is durable.
+ * Inserts are keyed by the id assigned at ingest, so a message that reaches
+ * this service twice (e.g. again via Kafka) still ends up as one document.
+ * Durable messages mark their attachments referenced (one update per batch)
+ * and are handed to the search index.
+ */
+@Service
+@Slf4j
+public class MessagePersistenceService {
+
+    public static final String ACK_DESTINATION = "/queue/ack";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageSearchIndex searchIndex;
+    private final FileStorageService fileStorageService;
+    private final Timer writeTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter failures;
+    private final Counter syncFallbacks;
+
+    @Value("${chat.app.persistence.batchSize:200}")
+    private int batchSize;
+
+    @Value("${chat.app.persistence.lingerMs:20}")
+    private long lingerMs;
+
+    @Value("${chat.app.persistence.queueCapacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.app.persistence.enqueueTimeoutMs:50}")
+    private long enqueueTimeoutMs;
+
+    private BlockingQueue<PendingWrite> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    public MessagePersistenceService(MongoTemplate mongoTemplate, SimpMessagingTemplate messagingTemplate,
+            MessageSearchIndex searchIndex, FileStorageService fileStorageService, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.searchIndex = searchIndex;
+        this.fileStorageService = fileStorageService;
+        this.writeTimer = meterRegistry.timer("chat.persistence.write");
+        this.batchSizes = meterRegistry.summary("chat.persistence.batch.size");
+        this.failures = meterRegistry.counter("chat.persistence.failed");
+        this.syncFallbacks = meterRegistry.counter("chat.persistence.sync.fallback");
+        meterRegistry.gauge("chat.persistence.queue.depth", this, MessagePersistenceService::getQueueDepth);
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::drainLoop, "message-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a message for persistence. When the queue stays full past the
+     * enqueue timeout the message is written on the caller's thread instead,
+     * which pushes back on the inbound channel rather than dropping data.
+     */
+    public void enqueue(Message message, String sessionId, String clientMessageId) {
+        PendingWrite write = new PendingWrite(message, sessionId, clientMessageId);
+        try {
+            if (running && queue.offer(write, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncFallbacks.increment();
+        log.warn("Persistence queue saturated, writing message {} synchronously", message.getId());
+        flush(List.of(write));
+    }
+
+    public int getQueueDepth() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    private void drainLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                        PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // not used for shutdown (stop() lets the writer finish); write what we have and leave
+                running = false;
+                Thread.currentThread().interrupt();
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                return;
+            } catch (Exception e) {
+                // the writer is the only consumer of the queue, it must survive a bad batch
+                log.error("Writing a batch of {} messages failed: {}", batch.size(), e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the messages before returning, for callers that must not proceed
+     * (e.g. commit Kafka offsets) until the batch is durable.
+     * Throws if any message could not be written.
+     */
+    public void persistNow(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        for (int index : insertAll(messages)) {
+            mongoTemplate.save(messages.get(index)); // upsert by id, failure propagates
+        }
+        fileStorageService.markReferenced(messages);
+        searchIndex.index(messages);
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        batch.forEach(w -> messages.add(w.message()));
+        Set<Integer> failed = insertAll(messages);
+
+        List<PendingWrite> retry = new ArrayList<>(failed.size());
+        List<Message> persisted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (failed.contains(i)) {
+                retry.add(batch.get(i));
+            } else {
+                persisted.add(messages.get(i));
+                ack(batch.get(i), "PERSISTED");
+            }
+        }
+        for (PendingWrite w : retry) {
+            try {
+                mongoTemplate.save(w.message()); // upsert by id
+                persisted.add(w.message());
+                ack(w, "PERSISTED");
+            } catch (Exception single) {
+                log.error("Persisting message {} failed: {}", w.message().getId(), single.getMessage());
+                failures.increment();
+                ack(w, "FAILED");
+            }
+        }
+        markReferenced(persisted);
+        searchIndex.index(persisted);
+    }
+
+    private void markReferenced(List<Message> persisted) {
+        try {
+            fileStorageService.markReferenced(persisted);
+        } catch (Exception e) {
+            log.error("Marking attachments of {} messages referenced failed: {}", persisted.size(), e.getMessage());
+        }
+    }
+
+    // Unordered bulk insert; returns indexes that still need writing (duplicate ids count as written)
+    private Set<Integer> insertAll(List<Message> messages) {
+        Set<Integer> failed = new HashSet<>();
+        batchSizes.record(messages.size());
+        Timer.Sample sample = Timer.start();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class)
+                    .insert(messages)
+                    .execute();
+        } catch (BulkOperationException e) {
+            e.getErrors().stream()
+                    .filter(err -> err.getCode() != DUPLICATE_KEY)
+                    .forEach(err -> failed.add(err.getIndex()));
+        } catch (Exception e) {
+            log.error("Bulk insert of {} messages failed, retrying one by one: {}", messages.size(), e.getMessage());
+            for (int i = 0; i < messages.size(); i++) {
+                failed.add(i);
+            }
+        } finally {
+            sample.stop(writeTimer); // includes failed and partially duplicate batches
+        }
+        return failed;
+    }
+
+    private void ack(PendingWrite write, String status) {
+        if (write.sessionId() == null) {
+            return;
+        }
+        try {
+            sendAck(write.sessionId(), write.message().getId(), write.clientMessageId(), status);
+        } catch (Exception e) {
+            log.warn("Ack {} for message {} not delivered: {}", status, write.message().getId(), e.getMessage());
+        }
+    }
+
+    // FAILED ack for a message that was turned away before it got an id (nothing was broadcast or stored)
+    public void ackRejected(String sessionId, String clientMessageId) {
+        try {
+            sendAck(sessionId, "", clientMessageId, "FAILED");
+        } catch (Exception e) {
+            log.warn("Ack FAILED for rejected message {} not delivered: {}", clientMessageId, e.getMessage());
+        }
+    }
+
+    private void sendAck(String sessionId, String messageId, String clientMessageId, String status) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        Map<String, Object> payload = Map.of(
+                "messageId", messageId,
+                "clientMessageId", clientMessageId != null ? clientMessageId : "",
+                "status", status);
+        messagingTemplate.convertAndSendToUser(sessionId, ACK_DESTINATION, payload, headers.getMessageHeaders());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // no interrupt: it could abort a bulk write in flight; the linger poll notices running on its own
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        // anything the writer could not get to before the join timeout
+        List<PendingWrite> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+        log.info("Message writer stopped");
+    }
+
+    private record PendingWrite(Message message, String sessionId, String clientMessageId) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory presence: counts STOMP sessions per user so a user stays online
+ * while any tab is open, and only reports offline after the last session has
+ * been gone for the debounce window (reconnects inside it are invisible).
+ * Changes are written to Mongo and published on /topic/presence in batches.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    private final MongoTemplate mongoTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${chat.app.presence.debounceMs:5000}")
+    private long debounceMs;
+
+    private final Map<String, String> sessionUsers = new HashMap<>();
+    private final Map<String, Integer> sessionCounts = new HashMap<>();
+    // users whose last session closed, waiting out the debounce window
+    private final Map<String, LocalDateTime> leaving = new HashMap<>();
+    private final Map<String, LocalDateTime> online = new HashMap<>();
+    // username -> latest change not yet flushed
+    private final Map<String, PresenceChange> changes = new LinkedHashMap<>();
+
+    public PresenceService(MongoTemplate mongoTemplate, SimpMessagingTemplate messagingTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public synchronized void connected(String sessionId, String username) {
+        if (sessionUsers.putIfAbsent(sessionId, username) != null) {
+            return;
+        }
+        if (sessionCounts.merge(username, 1, Integer::sum) > 1 || leaving.remove(username) != null) {
+            return; // another tab, or a reconnect inside the debounce window
+        }
+        LocalDateTime now = LocalDateTime.now();
+        online.put(username, now);
+        changes.put(username, new PresenceChange(username, true, now));
+    }
+
+    public synchronized void disconnected(String sessionId) {
+        String username = sessionUsers.remove(sessionId);
+        if (username == null) {
+            return;
+        }
+        Integer remaining = sessionCounts.computeIfPresent(username, (u, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            leaving.put(username, LocalDateTime.now());
+        }
+    }
+
+    public synchronized Set<String> getOnlineUsers() {
+        return Set.copyOf(online.keySet());
+    }
+
+    @Scheduled(fixedDelayString = "${chat.app.presence.flushMs:1000}")
+    public void flush() {
+        List<PresenceChange> batch;
+        synchronized (this) {
+            LocalDateTime cutoff = LocalDateTime.now().minusNanos(debounceMs * 1_000_000);
+            leaving.entrySet().removeIf(entry -> {
+                if (entry.getValue().isAfter(cutoff)) {
+                    return false;
+                }
+                online.remove(entry.getKey());
+                changes.put(entry.getKey(), new PresenceChange(entry.getKey(), false, entry.getValue()));
+                return true;
+            });
+            if (changes.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(changes.values());
+            changes.clear();
+        }
+
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+            batch.forEach(change -> bulk.updateOne(
+                    new Query(Criteria.where("email").is(change.email())),
+                    new Update().set("online", change.online()).set("lastSeen", change.lastSeen())));
+            bulk.execute();
+        } catch (Exception e) {
+            // presence is soft state; the in-memory view and the broadcast stay authoritative
+            log.error("Persisting {} presence changes failed: {}", batch.size(), e.getMessage());
+        }
+        messagingTemplate.convertAndSend("/topic/presence", batch);
+    }
+
+    public record PresenceChange(String email, boolean online, LocalDateTime lastSeen) {
+    }
+}
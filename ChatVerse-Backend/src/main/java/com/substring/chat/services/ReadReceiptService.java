@@ -0,0 +1,88 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.ReadWatermark;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read receipts as per-user, per-room watermarks.
+ * Receipts are coalesced in memory (highest message id wins) and flushed every
+ * window as one bulk of partial upserts, followed by a single status event per
+ * user and room instead of one per message read.
+ */
+@Service
+@Slf4j
+public class ReadReceiptService {
+
+    private final MongoTemplate mongoTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final Map<RoomReader, String> pending = new ConcurrentHashMap<>();
+
+    public ReadReceiptService(MongoTemplate mongoTemplate, SimpMessagingTemplate messagingTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public void record(String roomId, String reader, String messageId) {
+        if (reader == null || messageId == null || !ObjectId.isValid(messageId)) {
+            return;
+        }
+        pending.merge(new RoomReader(roomId, reader), messageId, ReadReceiptService::later);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.app.receipts.flushMs:500}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<RoomReader, String> window = new HashMap<>(pending);
+        // entries that moved on meanwhile stay pending for the next window
+        window.forEach(pending::remove);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReadWatermark.class);
+        LocalDateTime now = LocalDateTime.now();
+        window.forEach((key, messageId) -> bulk.upsert(
+                new Query(Criteria.where("roomId").is(key.roomId()).and("reader").is(key.reader())),
+                // $max keeps the watermark monotonic even if windows from two instances race
+                new Update().max("lastReadMessageId", messageId).set("updatedAt", now)));
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            log.error("Flushing {} read watermarks failed, retrying next window: {}", window.size(), e.getMessage());
+            window.forEach((key, messageId) -> pending.merge(key, messageId, ReadReceiptService::later));
+            return;
+        }
+
+        window.forEach((key, messageId) -> messagingTemplate.convertAndSend(
+                "/topic/room/" + key.roomId() + "/status",
+                Map.of("reader", key.reader(), "messageId", messageId, "status", "READ")));
+    }
+
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+
+    // same-length lowercase hex, so string order is ObjectId order
+    private static String later(String a, String b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private record RoomReader(String roomId, String reader) {
+    }
+}
@@ -0,0 +1,309 @@
+package com.substring.chat.services;
+
+import com.substring.chat.config.ClusterInstance;
+import com.substring.chat.entities.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Recent messages of active rooms, one fixed-size ring per room, filled on the
+ * write path (local ingest and Kafka). Rooms are kept in LRU order and the
+ * least recently used ones are dropped once the estimated size of all rings
+ * exceeds the byte budget.
+ * <p>
+ * "Latest N" relies on every message of the room passing through this
+ * instance, which holds in fanout mode (rooms whose messages it stops seeing
+ * are invalidated) and with a single instance (chat.app.recent.singleInstance).
+ * Then the ring always has the room's newest messages and answers once it has
+ * N of them, or fewer if it was seeded from the store with the room's whole
+ * history. In shared-group mode with several instances each sees only part of
+ * a room, so "latest" always goes to the store.
+ * <p>
+ * Seqs can have gaps (numbers lost on a restart, a message that never made it
+ * here). A gap between seeded messages is the store's own and is trusted; a
+ * gap among messages added live is a miss, and the reseed that follows turns
+ * it into a trusted one if the store has it too. Catch-up by seq is a hit
+ * only when the ring has every number after the client's last one, or the
+ * store vouched for the gaps.
+ */
+@Component
+public class RecentMessageBuffer {
+
+    private final int perRoom;
+    private final long roomOverhead;
+    private final long budgetBytes;
+    private final boolean seesAllMessages;
+    private final Map<String, Ring> rooms = new LinkedHashMap<>(256, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private long totalBytes;
+    private long totalMessages;
+
+    public RecentMessageBuffer(@Value("${chat.app.recent.perRoom:200}") int perRoom,
+            @Value("${chat.app.recent.budgetBytes:67108864}") long budgetBytes,
+            @Value("${chat.app.recent.singleInstance:false}") boolean singleInstance,
+            ClusterInstance clusterInstance, MeterRegistry meterRegistry) {
+        this.perRoom = Math.max(1, perRoom);
+        this.seesAllMessages = singleInstance || clusterInstance.isFanout();
+        // map entry, ring bookkeeping and the slot array, which is allocated up front
+        this.roomOverhead = 128 + 8L * this.perRoom;
+        this.budgetBytes = budgetBytes;
+        this.hits = meterRegistry.counter("chat.recent.cache", "result", "hit");
+        this.misses = meterRegistry.counter("chat.recent.cache", "result", "miss");
+        this.evictions = meterRegistry.counter("chat.recent.cache.evictions");
+        meterRegistry.gauge("chat.recent.cache.bytes", this, RecentMessageBuffer::getBytes);
+        meterRegistry.gauge("chat.recent.cache.rooms", this, RecentMessageBuffer::getRoomCount);
+        meterRegistry.gauge("chat.recent.cache.messages", this, RecentMessageBuffer::getMessageCount);
+    }
+
+    public int getCapacity() {
+        return perRoom;
+    }
+
+    public synchronized void add(Message message) {
+        Ring ring = ringFor(message.getRoomId());
+        apply(ring, () -> ring.add(message));
+        evictOver(ring);
+    }
+
+    /**
+     * Fills the room's ring from the store. history is oldest -> newest;
+     * complete means it is the room's entire history, so smaller "latest"
+     * requests than the ring capacity can always be answered.
+     */
+    public synchronized void seed(String roomId, List<Message> history, boolean complete) {
+        Ring old = rooms.get(roomId);
+        Ring ring = new Ring();
+        rooms.put(roomId, ring);
+        if (old == null) {
+            totalBytes += roomOverhead;
+        }
+        apply(ring, () -> {
+            history.forEach(ring::add);
+            if (old != null) {
+                // written after the query ran, or not persisted yet
+                old.forEach(ring::add);
+                totalBytes -= old.bytes;
+                totalMessages -= old.size;
+            }
+        });
+        ring.complete = complete && ring.dropped == 0;
+        for (Message message : history) {
+            Long seq = message.getSeq();
+            if (seq != null) {
+                ring.verifiedFrom = Math.min(ring.verifiedFrom, seq);
+                ring.verifiedTo = Math.max(ring.verifiedTo, seq);
+            }
+        }
+        evictOver(ring);
+    }
+
+    // the room's messages are no longer all seen here
+    public synchronized void invalidate(String roomId) {
+        Ring ring = rooms.remove(roomId);
+        if (ring != null) {
+            release(ring);
+        }
+    }
+
+    // newest limit messages, oldest -> newest, or null if the ring cannot vouch for them
+    public synchronized List<Message> latest(String roomId, int limit) {
+        Ring ring = rooms.get(roomId);
+        if (!seesAllMessages || ring == null || (ring.size < limit && !ring.complete)) {
+            misses.increment();
+            return null;
+        }
+        int count = Math.min(limit, ring.size);
+        List<Message> result = new ArrayList<>(count);
+        Long previous = null;
+        for (int i = ring.size - count; i < ring.size; i++) {
+            Long seq = ring.get(i).getSeq();
+            if (previous != null && seq != null && seq != previous + 1 && !ring.verifiedGap(previous, seq)) {
+                // maybe a message never reached this instance (e.g. Kafka was down); the store decides
+                misses.increment();
+                return null;
+            }
+            previous = seq != null ? seq : previous;
+            result.add(ring.get(i));
+        }
+        hits.increment();
+        return result;
+    }
+
+    /**
+     * Messages with seq greater than afterSeq, oldest first and at most limit of
+     * them, or null when the ring cannot prove it has all of them.
+     */
+    public synchronized List<Message> since(String roomId, long afterSeq, int limit) {
+        Ring ring = rooms.get(roomId);
+        List<Message> delta = ring != null ? ring.since(afterSeq, limit) : null;
+        (delta != null ? hits : misses).increment();
+        return delta;
+    }
+
+    public synchronized long getBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getRoomCount() {
+        return rooms.size();
+    }
+
+    public synchronized long getMessageCount() {
+        return totalMessages;
+    }
+
+    private Ring ringFor(String roomId) {
+        Ring ring = rooms.get(roomId);
+        if (ring == null) {
+            ring = new Ring();
+            rooms.put(roomId, ring);
+            totalBytes += roomOverhead;
+        }
+        return ring;
+    }
+
+    // runs a ring mutation and carries its size change into the totals
+    private void apply(Ring ring, Runnable mutation) {
+        long bytes = ring.bytes;
+        int size = ring.size;
+        mutation.run();
+        totalBytes += ring.bytes - bytes;
+        totalMessages += ring.size - size;
+    }
+
+    private void evictOver(Ring keep) {
+        Iterator<Ring> eldest = rooms.values().iterator();
+        while (totalBytes > budgetBytes && eldest.hasNext()) {
+            Ring ring = eldest.next();
+            if (ring == keep) {
+                continue;
+            }
+            eldest.remove();
+            release(ring);
+            evictions.increment();
+        }
+    }
+
+    private void release(Ring ring) {
+        totalBytes -= ring.bytes + roomOverhead;
+        totalMessages -= ring.size;
+    }
+
+    // rough heap footprint: object headers and fields plus the strings' characters
+    private static long sizeOf(Message m) {
+        return 120 + sizeOf(m.getId()) + sizeOf(m.getSender()) + sizeOf(m.getContent()) + sizeOf(m.getRoomId())
+                + sizeOf(m.getFileUrl()) + sizeOf(m.getFileName()) + sizeOf(m.getFileType())
+                + sizeOf(m.getThumbnailUrl());
+    }
+
+    private static long sizeOf(String s) {
+        return s == null ? 0 : 48 + 2L * s.length();
+    }
+
+    /**
+     * Circular array of a room's newest messages. Sequenced messages are kept
+     * in seq order (a message from another instance can arrive slightly late),
+     * unsequenced ones simply go after whatever is there.
+     */
+    private final class Ring {
+
+        private final Message[] slots = new Message[perRoom];
+        private int head;
+        private int size;
+        private long bytes;
+        private long dropped; // messages pushed out at the old end
+        private boolean complete;
+        // seq range the last seed read from the store; gaps inside it are real
+        private long verifiedFrom = Long.MAX_VALUE;
+        private long verifiedTo = Long.MIN_VALUE;
+
+        boolean verifiedGap(long before, long after) {
+            return before >= verifiedFrom && after <= verifiedTo;
+        }
+
+        Message get(int i) {
+            return slots[(head + i) % slots.length];
+        }
+
+        void add(Message message) {
+            Long seq = message.getSeq();
+            int pos = size;
+            if (seq != null) {
+                while (pos > 0 && get(pos - 1).getSeq() != null && get(pos - 1).getSeq() >= seq) {
+                    if (get(pos - 1).getSeq().equals(seq)) {
+                        return; // already here, e.g. both seeded and written live
+                    }
+                    pos--;
+                }
+            }
+            if (size == slots.length) {
+                if (pos == 0) {
+                    return; // older than anything the ring keeps
+                }
+                bytes -= sizeOf(slots[head]);
+                slots[head] = null;
+                head = (head + 1) % slots.length;
+                size--;
+                pos--;
+                dropped++;
+                complete = false;
+            }
+            for (int i = size; i > pos; i--) {
+                slots[(head + i) % slots.length] = get(i - 1);
+            }
+            slots[(head + pos) % slots.length] = message;
+            size++;
+            bytes += sizeOf(message);
+        }
+
+        List<Message> since(long afterSeq, int limit) {
+            if (size == 0) {
+                return null;
+            }
+            List<Message> delta = new ArrayList<>();
+            long expected = afterSeq + 1;
+            boolean anchored = false; // the ring reaches back to afterSeq + 1
+            for (int i = 0; i < size; i++) {
+                Long seq = get(i).getSeq();
+                if (seq == null) {
+                    continue;
+                }
+                if (!anchored) {
+                    if (seq > expected) {
+                        return null;
+                    }
+                    anchored = true;
+                }
+                if (seq <= afterSeq) {
+                    continue;
+                }
+                if (seq != expected && !verifiedGap(expected - 1, seq)) {
+                    return null;
+                }
+                if (delta.size() == limit) {
+                    break;
+                }
+                delta.add(get(i));
+                expected = seq + 1;
+            }
+            return anchored ? delta : null;
+        }
+
+        void forEach(Consumer<Message> action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(get(i));
+            }
+        }
+    }
+}
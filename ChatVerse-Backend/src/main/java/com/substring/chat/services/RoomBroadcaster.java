@@ -0,0 +1,73 @@
+package com.substring.chat.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.substring.chat.entities.Message;
+import com.substring.chat.payload.OutboundMessage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends chat messages to /topic/room/{roomId}. Each broadcast is encoded once
+ * as a lean {@link OutboundMessage} into a byte[] frame body; the broker hands
+ * that same payload to every subscriber, so nothing is re-serialized per session.
+ */
+@Component
+public class RoomBroadcaster {
+
+    public static final String ROOM_TOPIC = "/topic/room/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final Timer broadcastTimer;
+    private final DistributionSummary frameBytes;
+
+    public RoomBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.broadcastTimer = meterRegistry.timer("chat.broadcast");
+        this.frameBytes = DistributionSummary.builder("chat.broadcast.frame.bytes").baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void broadcast(Message message) {
+        send(message.getRoomId(), OutboundMessage.from(message));
+    }
+
+    // A single message as before, several as one ordered array frame
+    public void broadcast(String roomId, List<Message> messages) {
+        if (messages.size() == 1) {
+            send(roomId, OutboundMessage.from(messages.get(0)));
+            return;
+        }
+        List<OutboundMessage> frame = new ArrayList<>(messages.size());
+        messages.forEach(m -> frame.add(OutboundMessage.from(m)));
+        send(roomId, frame);
+    }
+
+    private void send(String roomId, Object payload) {
+        Timer.Sample sample = Timer.start();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode broadcast for room " + roomId, e);
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        messagingTemplate.send(ROOM_TOPIC + roomId, MessageBuilder.createMessage(body, headers.getMessageHeaders()));
+        sample.stop(broadcastTimer);
+        frameBytes.record(body.length);
+    }
+}
@@ -0,0 +1,107 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.Room;
+import com.substring.chat.kafka.KafkaProducer;
+import com.substring.chat.repositories.RoomRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache of rooms by roomId, including misses (negative entries)
+ * so probes for unknown rooms do not hit Mongo either. LRU bounded; positive
+ * and negative entries have their own TTL. Creates are announced to all
+ * instances for invalidation when Kafka is available.
+ */
+@Service
+@Slf4j
+public class RoomCacheService {
+
+    private final RoomRepository roomRepository;
+    private final KafkaProducer kafkaProducer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.app.rooms.cacheTtlMs:600000}")
+    private long ttlMs;
+
+    @Value("${chat.app.rooms.negativeTtlMs:30000}")
+    private long negativeTtlMs;
+
+    private final Map<String, Entry> entries;
+
+    public RoomCacheService(RoomRepository roomRepository, KafkaProducer kafkaProducer, MeterRegistry meterRegistry,
+            @Value("${chat.app.rooms.cacheSize:10000}") int maxSize) {
+        this.roomRepository = roomRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.meterRegistry = meterRegistry;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    // null when the room does not exist
+    public Room find(String roomId) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(roomId);
+        }
+        if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+            meterRegistry.counter("chat.rooms.cache", "result", "hit").increment();
+            return entry.room();
+        }
+        meterRegistry.counter("chat.rooms.cache", "result", "miss").increment();
+        Room room = roomRepository.findByRoomId(roomId);
+        cache(roomId, room);
+        return room;
+    }
+
+    /**
+     * Inserts the room; the unique index decides between concurrent creators.
+     * The lookup first covers the index not existing yet (it is ensured
+     * asynchronously at startup) or failing to build.
+     * Returns null if a room with this id already exists.
+     */
+    public Room create(String roomId, String roomName) {
+        if (roomRepository.findByRoomId(roomId) != null) {
+            return null;
+        }
+        Room room = new Room();
+        room.setRoomId(roomId);
+        room.setRoomName(roomName);
+        try {
+            room = roomRepository.insert(room);
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
+        cache(roomId, room);
+        // other instances may hold a negative entry for this id; they expire it after negativeTtlMs anyway
+        try {
+            kafkaProducer.publishRoomChanged(roomId);
+        } catch (Exception e) {
+            log.warn("Room {} created but not announced to other instances: {}", roomId, e.getMessage());
+        }
+        return room;
+    }
+
+    public synchronized void invalidate(String roomId) {
+        entries.remove(roomId);
+    }
+
+    private void cache(String roomId, Room room) {
+        long ttl = room != null ? ttlMs : negativeTtlMs;
+        synchronized (this) {
+            entries.put(roomId, new Entry(room, System.currentTimeMillis() + ttl));
+        }
+    }
+
+    private record Entry(Room room, long expiresAt) {
+    }
+}
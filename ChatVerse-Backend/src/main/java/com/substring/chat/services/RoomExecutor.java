@@ -0,0 +1,204 @@
+package com.substring.chat.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Striped executor keyed by roomId. Every room maps to one lane, a bounded
+ * queue drained by a single worker, so tasks of one room run strictly in
+ * submission order while different lanes run in parallel. A full lane holds
+ * the submitter for up to the offer timeout and then rejects the task.
+ * Lanes whose backlog reaches hotDepth are reported with their busiest room.
+ */
+@Component
+@Slf4j
+public class RoomExecutor {
+
+    private static final long POLL_MS = 100;
+
+    private final Lane[] lanes;
+    private final int queueCapacity;
+    private final long offerTimeoutMs;
+    private final int hotDepth;
+    private final ThreadFactory threadFactory;
+    private final Timer waitTimer;
+    private final Counter rejected;
+    private final Counter hotDetected;
+    private final AtomicInteger hotLanes = new AtomicInteger();
+    private volatile boolean running;
+
+    public RoomExecutor(@Value("${chat.app.lanes.count:0}") int laneCount,
+            @Value("${chat.app.lanes.queueCapacity:1000}") int queueCapacity,
+            @Value("${chat.app.lanes.offerTimeoutMs:1000}") long offerTimeoutMs,
+            @Value("${chat.app.lanes.hotDepth:100}") int hotDepth,
+            Environment environment, MeterRegistry meterRegistry) {
+        boolean virtualThreads = Threading.VIRTUAL.isActive(environment);
+        if (laneCount <= 0) {
+            // idle virtual lanes cost next to nothing, more lanes means fewer rooms sharing one
+            laneCount = virtualThreads ? 256 : Runtime.getRuntime().availableProcessors() * 2;
+        }
+        this.queueCapacity = queueCapacity;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.hotDepth = hotDepth;
+        this.threadFactory = virtualThreads
+                ? new VirtualThreadTaskExecutor("room-lane-").getVirtualThreadFactory()
+                : platformThreads();
+        this.waitTimer = meterRegistry.timer("chat.lanes.wait");
+        this.rejected = meterRegistry.counter("chat.lanes.rejected");
+        this.hotDetected = meterRegistry.counter("chat.lanes.hot.detected");
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i);
+            Gauge.builder("chat.lanes.depth", lanes[i], Lane::depth)
+                    .tag("lane", String.valueOf(i)).register(meterRegistry);
+        }
+        meterRegistry.gauge("chat.lanes.depth.max", this, RoomExecutor::getMaxDepth);
+        meterRegistry.gauge("chat.lanes.hot", hotLanes);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        for (Lane lane : lanes) {
+            lane.worker = threadFactory.newThread(lane);
+            lane.worker.start();
+        }
+        log.info("Started {} room lanes", lanes.length);
+    }
+
+    /**
+     * Queues the task behind earlier tasks of the same room. Returns false when
+     * the room's lane stayed full for the offer timeout or the executor is
+     * shutting down; the task is then not run.
+     */
+    public boolean submit(String roomId, Runnable task) {
+        Lane lane = laneFor(roomId);
+        try {
+            if (running && lane.queue.offer(new Task(roomId, task, System.nanoTime()),
+                    offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        log.warn("Lane {} full, rejected task for room {}", lane.index, roomId);
+        return false;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getMaxDepth() {
+        int max = 0;
+        for (Lane lane : lanes) {
+            max = Math.max(max, lane.depth());
+        }
+        return max;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.app.lanes.hotCheckMs:1000}")
+    public void detectHotLanes() {
+        int hot = 0;
+        for (Lane lane : lanes) {
+            int depth = lane.depth();
+            if (depth < hotDepth) {
+                continue;
+            }
+            hot++;
+            hotDetected.increment();
+            // only walked for lanes that are already backed up
+            Map<String, Integer> perRoom = new HashMap<>();
+            lane.queue.forEach(t -> perRoom.merge(t.roomId(), 1, Integer::sum));
+            perRoom.entrySet().stream().max(Map.Entry.comparingByValue()).ifPresent(top ->
+                    log.warn("Hot lane {}: {}/{} queued, room {} holds {}",
+                            lane.index, depth, queueCapacity, top.getKey(), top.getValue()));
+        }
+        hotLanes.set(hot);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // workers drain what is queued, then exit
+        running = false;
+        for (Lane lane : lanes) {
+            lane.worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        log.info("Room lanes stopped");
+    }
+
+    private Lane laneFor(String roomId) {
+        int h = roomId.hashCode();
+        return lanes[((h ^ (h >>> 16)) & Integer.MAX_VALUE) % lanes.length];
+    }
+
+    private static ThreadFactory platformThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "room-lane-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private final class Lane implements Runnable {
+
+        private final int index;
+        private final BlockingQueue<Task> queue;
+        private Thread worker;
+
+        Lane(int index) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        int depth() {
+            return queue.size();
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Task task;
+                try {
+                    task = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue; // the loop condition decides whether to keep draining
+                }
+                if (task == null) {
+                    continue;
+                }
+                waitTimer.record(System.nanoTime() - task.enqueuedAt(), TimeUnit.NANOSECONDS);
+                try {
+                    task.action().run();
+                } catch (Exception e) {
+                    // a failing task must not stall the rooms behind it
+                    log.error("Task for room {} failed on lane {}: {}", task.roomId(), index, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private record Task(String roomId, Runnable action, long enqueuedAt) {
+    }
+}
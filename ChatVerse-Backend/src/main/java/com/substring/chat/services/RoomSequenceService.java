@@ -0,0 +1,198 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.RoomSequence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Per-room message sequence numbers. The counter lives in room_sequences and
+ * is advanced with one atomic $inc per block of blockSize numbers; the numbers
+ * of the current block are handed out from memory. Callers must not ask for
+ * the same room concurrently (ingest runs on the room's RoomExecutor lane).
+ * <p>
+ * blockSize 1 without prefetch (the default) keeps numbers gap-free and
+ * increasing across instances, which resume-by-seq relies on.
+ * <p>
+ * With prefetch on, the next block is reserved on a background thread as soon
+ * as the current one is taken from, so the lane rarely waits for Mongo. The
+ * lane always takes over the block that was reserved ahead, waiting for it if
+ * it has not landed yet; it only reserves itself when the prefetch reserved
+ * nothing, so no number is skipped while the instance runs. Numbers reserved
+ * ahead are still lost on restart or when the room is evicted, and with
+ * several instances ingesting one room a number reserved ahead can go out
+ * after a higher one from another instance, so prefetch and larger blocks
+ * only suit rooms ingested by a single instance. If Mongo cannot be reached
+ * the message goes out without a number and reservations pause for retryMs,
+ * so a dead database does not stall the lanes.
+ */
+@Service
+@Slf4j
+public class RoomSequenceService {
+
+    private final MongoTemplate mongoTemplate;
+    private final int blockSize;
+    private final long retryMs;
+    private final Map<String, Block> blocks;
+    private final Timer reserveTimer;
+    private final Counter unassigned;
+    private final Counter inline;
+    private final ThreadPoolExecutor prefetcher; // null when prefetch is off
+    private volatile long pausedUntil;
+
+    public RoomSequenceService(MongoTemplate mongoTemplate,
+            @Value("${chat.app.seq.blockSize:1}") int blockSize,
+            @Value("${chat.app.seq.retryMs:5000}") long retryMs,
+            @Value("${chat.app.seq.maxRooms:10000}") int maxRooms,
+            @Value("${chat.app.seq.prefetch:false}") boolean prefetch,
+            MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.blockSize = Math.max(1, blockSize);
+        this.retryMs = retryMs;
+        // one thread keeps reservations per room in order; a full queue just means the lane reserves itself
+        this.prefetcher = prefetch
+                ? new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1000),
+                        r -> {
+                            Thread t = new Thread(r, "seq-prefetch");
+                            t.setDaemon(true);
+                            return t;
+                        },
+                        new ThreadPoolExecutor.AbortPolicy())
+                : null;
+        this.blocks = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Block> eldest) {
+                return size() > maxRooms;
+            }
+        };
+        this.reserveTimer = meterRegistry.timer("chat.seq.reserve");
+        this.unassigned = meterRegistry.counter("chat.seq.unassigned");
+        // reservations made on the lane itself
+        this.inline = meterRegistry.counter("chat.seq.reserve.inline");
+    }
+
+    // queued prefetches still run, so a lane waiting for one is never left hanging
+    @PreDestroy
+    void stop() {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+    }
+
+    // next number for the room, null when none could be reserved
+    public Long next(String roomId) {
+        Block block;
+        synchronized (this) {
+            block = blocks.get(roomId);
+        }
+        if (block == null || block.next > block.last) {
+            block = block != null && block.ahead != null ? takeOver(roomId, block.ahead) : reserveInline(roomId);
+            if (block == null) {
+                unassigned.increment();
+                return null;
+            }
+            synchronized (this) {
+                blocks.put(roomId, block);
+            }
+        }
+        long seq = block.next++;
+        if (prefetcher != null && !block.requested) {
+            block.requested = true;
+            prefetch(roomId, block);
+        }
+        return seq;
+    }
+
+    private void prefetch(String roomId, Block current) {
+        CompletableFuture<Block> ahead = new CompletableFuture<>();
+        try {
+            prefetcher.execute(() -> ahead.complete(reserve(roomId)));
+            current.ahead = ahead;
+        } catch (RejectedExecutionException e) {
+            log.debug("Sequence prefetch queue full, room {} reserves on its lane", roomId);
+        }
+    }
+
+    /**
+     * The block reserved ahead, waiting for it if needed. Only when the
+     * prefetch reserved nothing (Mongo failed, or it is cancelled after
+     * retryMs) does the lane reserve itself, so the two are never both used.
+     */
+    private Block takeOver(String roomId, CompletableFuture<Block> ahead) {
+        Block block;
+        try {
+            block = ahead.get(retryMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // a cancelled prefetch that still lands is dropped; that skips numbers but never reuses them
+            block = ahead.cancel(false) ? null : ahead.getNow(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ahead.cancel(false);
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            block = null;
+        }
+        return block != null ? block : reserveInline(roomId);
+    }
+
+    private Block reserveInline(String roomId) {
+        inline.increment();
+        return reserve(roomId);
+    }
+
+    private Block reserve(String roomId) {
+        if (System.currentTimeMillis() < pausedUntil) {
+            return null;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            RoomSequence counter = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("roomId").is(roomId)),
+                    new Update().inc("seq", blockSize),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    RoomSequence.class);
+            long last = counter.getSeq();
+            return new Block(last - blockSize + 1, last);
+        } catch (Exception e) {
+            pausedUntil = System.currentTimeMillis() + retryMs;
+            log.warn("Could not reserve sequence numbers for room {}, pausing for {} ms: {}",
+                    roomId, retryMs, e.getMessage());
+            return null;
+        } finally {
+            sample.stop(reserveTimer);
+        }
+    }
+
+    // only touched by the room's lane; the prefetch thread just completes the future
+    private static final class Block {
+        private long next;
+        private final long last;
+        private boolean requested;
+        private CompletableFuture<Block> ahead;
+
+        Block(long first, long last) {
+            this.next = first;
+            this.last = last;
+        }
+    }
+}
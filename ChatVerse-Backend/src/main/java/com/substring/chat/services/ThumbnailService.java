@@ -0,0 +1,237 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.FileBlob;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background JPEG previews for image attachments, built with ImageIO/Java2D
+ * only. At upload the blob's header is probed: only formats ImageIO can decode
+ * (whatever type the client claims) and images within maxPixels get a job on
+ * a small bounded pool; when the queue is full the preview is skipped and
+ * clients fall back to the original. The preview lives at a url derived from
+ * the blob hash, which messages carry once a preview exists or is on its way.
+ */
+@Service
+@Slf4j
+public class ThumbnailService {
+
+    public static final String THUMB_DIR = "thumbs";
+
+    private final FileStorageService fileStorageService;
+    private final MongoTemplate mongoTemplate;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet(); // hashes with a queued or running job
+
+    @Value("${chat.app.thumbnails.maxDimension:320}")
+    private int maxDimension;
+
+    // decoding needs about 4 bytes per pixel; bigger images (or decompression bombs) get no preview
+    @Value("${chat.app.thumbnails.maxPixels:40000000}")
+    private long maxPixels;
+
+    @Value("${chat.app.thumbnails.quality:0.8}")
+    private float quality;
+
+    public ThumbnailService(FileStorageService fileStorageService, MongoTemplate mongoTemplate,
+            @Value("${chat.app.thumbnails.workers:2}") int workers,
+            @Value("${chat.app.thumbnails.queueCapacity:200}") int queueCapacity) {
+        this.fileStorageService = fileStorageService;
+        this.mongoTemplate = mongoTemplate;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "thumbnail-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Url of the preview for a blob url, or null if the attachment has none built or on its way
+    public String thumbnailUrlFor(String fileUrl) {
+        String hash = fileStorageService.hashOf(fileUrl);
+        if (hash == null || !hash.matches("[0-9a-f]{64}")) {
+            return null;
+        }
+        String relative = relativePath(hash);
+        if (!pending.contains(hash) && !Files.exists(fileStorageService.getRoot().resolve(relative))) {
+            return null;
+        }
+        return FileStorageService.URL_PREFIX + relative;
+    }
+
+    // Queues the preview if the blob is a decodable image within the limits; true if one exists or will
+    public boolean submit(FileBlob blob) {
+        Path target = fileStorageService.getRoot().resolve(relativePath(blob.getId()));
+        if (Files.exists(target)) {
+            return true; // deduplicated upload, preview already built
+        }
+        Path source = fileStorageService.getRoot().resolve(blob.getPath());
+        try {
+            if (decode(source, false) == null) {
+                return false;
+            }
+        } catch (IOException e) {
+            log.debug("Blob {} is no readable image: {}", blob.getId(), e.getMessage());
+            return false;
+        }
+        pending.add(blob.getId());
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(blob, source, target);
+                } finally {
+                    pending.remove(blob.getId());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(blob.getId());
+            log.warn("Thumbnail queue full, preview skipped");
+            return false;
+        }
+    }
+
+    /**
+     * Reads the image through an ImageReader so the size is known from the
+     * header before any pixels are decoded. Returns null for formats ImageIO
+     * cannot read and images over maxPixels; unless fully, a non-null result
+     * is a 1x1 placeholder. Large images are subsampled while decoding, since
+     * the preview only needs a few times maxDimension.
+     */
+    private BufferedImage decode(Path file, boolean fully) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.debug("Image {} is {}x{}, over the preview limit", file.getFileName(), width, height);
+                    return null;
+                }
+                if (!fully) {
+                    return new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (maxDimension * 4));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void generate(FileBlob blob, Path sourcePath, Path target) {
+        try {
+            BufferedImage source = decode(sourcePath, true);
+            if (source == null) {
+                return;
+            }
+            BufferedImage preview = downscale(source);
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), blob.getId(), ".tmp");
+            writeJpeg(preview, tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(blob.getId())),
+                    new Update().set("thumbnailPath", relativePath(blob.getId())), FileBlob.class);
+        } catch (Exception e) {
+            log.error("Thumbnail for blob {} failed: {}", blob.getId(), e.getMessage());
+        }
+    }
+
+    // Halves repeatedly before the final bilinear step, which keeps quality close to area averaging
+    private BufferedImage downscale(BufferedImage source) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int targetW = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetH = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = toRgb(source);
+        int w = current.getWidth();
+        int h = current.getHeight();
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage step = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = step;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    // JPEG has no alpha: flatten onto white
+    private BufferedImage toRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+            return source;
+        }
+        BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(source, 0, 0, Color.WHITE, null);
+        g.dispose();
+        return rgb;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static String relativePath(String hash) {
+        return THUMB_DIR + "/" + hash.substring(0, 2) + "/" + hash + ".jpg";
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+}
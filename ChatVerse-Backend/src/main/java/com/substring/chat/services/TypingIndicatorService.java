@@ -0,0 +1,76 @@
+package com.substring.chat.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates typing frames into one "currently typing" snapshot per room.
+ * Typers expire after the TTL unless they keep sending, and a room's snapshot
+ * is published at most once per interval and only when the set changed.
+ */
+@Service
+public class TypingIndicatorService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${chat.app.typing.ttlMs:3000}")
+    private long ttlMs;
+
+    // roomId -> (username -> expiry in epoch millis)
+    private final Map<String, Map<String, Long>> typingByRoom = new ConcurrentHashMap<>();
+    // roomId -> last snapshot sent
+    private final Map<String, Set<String>> published = new ConcurrentHashMap<>();
+
+    public TypingIndicatorService(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public void update(String roomId, String username, boolean typing) {
+        if (username == null) {
+            return;
+        }
+        if (typing) {
+            // inside compute, so publish() cannot drop the room between the lookup and the put
+            typingByRoom.compute(roomId, (r, typers) -> {
+                Map<String, Long> room = typers != null ? typers : new ConcurrentHashMap<>();
+                room.put(username, System.currentTimeMillis() + ttlMs);
+                return room;
+            });
+        } else {
+            Map<String, Long> typers = typingByRoom.get(roomId);
+            if (typers != null) {
+                typers.remove(username);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.app.typing.intervalMs:300}")
+    public void publish() {
+        long now = System.currentTimeMillis();
+        typingByRoom.forEach((roomId, typers) -> {
+            typers.values().removeIf(expiry -> expiry < now);
+            Set<String> snapshot = new TreeSet<>(typers.keySet());
+            Set<String> previous = published.getOrDefault(roomId, Set.of());
+            if (!snapshot.equals(previous)) {
+                messagingTemplate.convertAndSend("/topic/room/" + roomId + "/typing",
+                        Map.of("roomId", roomId, "users", List.copyOf(snapshot)));
+            }
+            if (snapshot.isEmpty()) {
+                // idle room: forget it until someone types again
+                published.remove(roomId);
+                // only if still empty: someone may have started typing since the snapshot
+                typingByRoom.computeIfPresent(roomId, (k, v) -> v.isEmpty() ? null : v);
+            } else {
+                published.put(roomId, snapshot);
+            }
+        });
+    }
+}
@@ -0,0 +1,146 @@
+package com.substring.chat.kafka;
+
+import com.substring.chat.entities.Message;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCodecTest {
+
+	private final MessageDeserializer deserializer = new MessageDeserializer();
+
+	@Test
+	void roundTripsAllFields() {
+		Message message = message("65f1c2a9e4b0a1b2c3d4e5f6", 42L);
+		message.setFileUrl("/api/v1/files/ab/abcdef");
+		message.setFileName("photo.png");
+		message.setFileType("image/png");
+		message.setThumbnailUrl("/api/v1/files/thumbs/ab/abcdef.jpg");
+		message.setStatus(Message.MessageStatus.READ);
+
+		assertRoundTrip(message);
+	}
+
+	@Test
+	void roundTripsNullFields() {
+		Message empty = new Message();
+		empty.setStatus(null);
+		assertRoundTrip(empty);
+
+		Message partial = message("65f1c2a9e4b0a1b2c3d4e5f6", null);
+		partial.setContent(null);
+		partial.setStatus(null);
+		Message decoded = MessageCodec.decode(MessageCodec.encode(partial));
+		assertThat(decoded.getContent()).isNull();
+		assertThat(decoded.getSeq()).isNull();
+		// absent status stays null rather than becoming the entity default
+		assertThat(decoded.getStatus()).isNull();
+		assertThat(decoded).usingRecursiveComparison().isEqualTo(partial);
+	}
+
+	@Test
+	void roundTripsNonObjectIdIdsAndText() {
+		assertRoundTrip(message("legacy-id-1", 1L));
+		// upper case hex is not stored as raw bytes, it would come back lower case
+		assertRoundTrip(message("65F1C2A9E4B0A1B2C3D4E5F6", 1L));
+
+		Message unicode = message("65f1c2a9e4b0a1b2c3d4e5f6", 1L);
+		unicode.setContent("grüße 👋 ".repeat(100));
+		assertRoundTrip(unicode);
+	}
+
+	@Test
+	void seqIsTheTrailingField() {
+		for (long seq : new long[] { 0L, 1L, 127L, 128L, 300L, Integer.MAX_VALUE + 1L, Long.MAX_VALUE }) {
+			Message message = message("65f1c2a9e4b0a1b2c3d4e5f6", seq);
+			byte[] data = MessageCodec.encode(message);
+			assertThat(MessageCodec.decode(data)).usingRecursiveComparison().isEqualTo(message);
+		}
+		// a record written before seq existed has neither the bit nor the varint
+		Message older = MessageCodec.decode(MessageCodec.encode(message("65f1c2a9e4b0a1b2c3d4e5f6", null)));
+		assertThat(older.getSeq()).isNull();
+		assertThat(older.getRoomId()).isEqualTo("room-1");
+	}
+
+	@Test
+	void decoderStopsBeforeFieldsItDoesNotKnow() {
+		// a newer writer appends a field after seq under the next bit; this reader ignores the extra bytes
+		Message message = message("65f1c2a9e4b0a1b2c3d4e5f6", 300L);
+		byte[] data = MessageCodec.encode(message);
+		byte[] newer = Arrays.copyOf(data, data.length + 2);
+		newer[3] |= 1 << 5; // fields varint is two bytes, bits 7-13 in the second: bit 12 is its bit 5
+		newer[data.length] = 1;
+		newer[data.length + 1] = 0x7F;
+		assertThat(MessageCodec.decode(newer)).usingRecursiveComparison().isEqualTo(message);
+	}
+
+	@Test
+	void timeStampKeepsMillis() {
+		Message message = message("65f1c2a9e4b0a1b2c3d4e5f6", 5L);
+		message.setTimeStamp(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000));
+		assertRoundTrip(message);
+	}
+
+	@Test
+	void rejectsTruncatedAndUnknownVersions() {
+		byte[] data = MessageCodec.encode(message("65f1c2a9e4b0a1b2c3d4e5f6", 9L));
+		assertThatThrownBy(() -> MessageCodec.decode(Arrays.copyOf(data, data.length - 5)))
+				.isInstanceOf(SerializationException.class);
+
+		byte[] future = data.clone();
+		future[1] = (byte) (MessageCodec.VERSION + 1);
+		assertThatThrownBy(() -> MessageCodec.decode(future)).isInstanceOf(SerializationException.class);
+	}
+
+	@Test
+	void deserializerReadsBinaryRecords() {
+		Message message = message("65f1c2a9e4b0a1b2c3d4e5f6", 3L);
+		Message decoded = deserializer.deserialize("chat-messages", MessageCodec.encode(message));
+		assertThat(decoded).usingRecursiveComparison().isEqualTo(message);
+		assertThat(deserializer.deserialize("chat-messages", new byte[0])).isNull();
+		assertThat(deserializer.deserialize("chat-messages", (byte[]) null)).isNull();
+	}
+
+	@Test
+	void deserializerFallsBackToJson() {
+		String json = """
+				{"id":"65f1c2a9e4b0a1b2c3d4e5f6","sender":"alice","content":"hi","timeStamp":"2024-05-01T10:15:30.123",
+				"roomId":"room-1","seq":7,"status":"DELIVERED","unknownField":true}
+				""";
+		byte[] data = json.getBytes(StandardCharsets.UTF_8);
+		assertThat(MessageCodec.isBinary(data)).isFalse();
+
+		Message decoded = deserializer.deserialize("chat-messages", data);
+		assertThat(decoded.getId()).isEqualTo("65f1c2a9e4b0a1b2c3d4e5f6");
+		assertThat(decoded.getSender()).isEqualTo("alice");
+		assertThat(decoded.getContent()).isEqualTo("hi");
+		assertThat(decoded.getTimeStamp()).isEqualTo(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000));
+		assertThat(decoded.getRoomId()).isEqualTo("room-1");
+		assertThat(decoded.getSeq()).isEqualTo(7L);
+		assertThat(decoded.getStatus()).isEqualTo(Message.MessageStatus.DELIVERED);
+		assertThat(decoded.getFileUrl()).isNull();
+	}
+
+	private static void assertRoundTrip(Message message) {
+		byte[] data = MessageCodec.encode(message);
+		assertThat(MessageCodec.isBinary(data)).isTrue();
+		assertThat(MessageCodec.decode(data)).usingRecursiveComparison().isEqualTo(message);
+	}
+
+	private static Message message(String id, Long seq) {
+		Message message = new Message();
+		message.setId(id);
+		message.setSender("alice");
+		message.setContent("hello");
+		message.setTimeStamp(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000));
+		message.setRoomId("room-1");
+		message.setSeq(seq);
+		return message;
+	}
+}
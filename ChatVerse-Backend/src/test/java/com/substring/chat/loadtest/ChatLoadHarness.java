@@ -0,0 +1,296 @@
+package com.substring.chat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.substring.chat.services.MessagePersistenceService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Measurement;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end load run: the full app on a random port with embedded Kafka and
+ * an in-memory Mongo stand-in, driven by SockJS/STOMP clients that subscribe
+ * to their room and send on /app/sendMessage/{roomId}. Each message carries
+ * its send time, so every delivered frame yields a send-to-receive latency.
+ * Not part of the default test run:
+ *
+ *   mvn test -Dtest=ChatLoadHarness -Dloadtest.clients=2000 -Dloadtest.rate=500 -Dloadtest.distribution=zipf
+ *
+ * See {@link LoadProfile} for all knobs; the report goes to stdout and
+ * target/loadtest-report.json (override with -Dloadtest.report).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.data.mongodb.uri=mongodb://127.0.0.1:1/loadtest?serverSelectionTimeoutMS=200&connectTimeoutMS=200",
+        "logging.level.com.substring.chat=WARN",
+        "logging.level.org.apache.kafka=WARN",
+        "logging.level.org.springframework.kafka=WARN"
+})
+@EmbeddedKafka(kraft = true, partitions = 3, topics = {"chat-messages", "room-events"})
+class ChatLoadHarness {
+
+    private static final String MARKER = "lt|";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private InMemoryMongoTemplate mongoTemplate;
+
+    @Autowired
+    private MessagePersistenceService persistenceService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TestConfiguration
+    static class StandIns {
+        @Bean
+        InMemoryMongoTemplate mongoTemplate(MongoDatabaseFactory factory, MongoConverter converter) {
+            return new InMemoryMongoTemplate(factory, converter, LoadProfile.fromSystemProperties().mongoWriteLatencyMs());
+        }
+    }
+
+    @Test
+    void run() throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        LoadReport report = new LoadReport();
+        int[] roomOf = profile.assignRooms();
+        int[] members = new int[profile.rooms()];
+        for (int room : roomOf) {
+            members[room]++;
+        }
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(transport(profile));
+        stompClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+        stompClient.setDefaultHeartbeat(new long[]{0, 0});
+        String url = "sockjs".equals(profile.transport())
+                ? "http://localhost:" + port + "/chat"
+                : "ws://localhost:" + port + "/chat/websocket";
+
+        StompSession[] sessions = connectAll(stompClient, url, profile, roomOf, report);
+        TimeUnit.SECONDS.sleep(2); // let the broker register every subscription
+
+        long sendNanos = sendAtRate(profile, sessions, roomOf, members, report);
+        TimeUnit.SECONDS.sleep(profile.drainSeconds());
+        // taken while every client is still connected
+        Map<String, Object> server = new LinkedHashMap<>();
+        server.put("persistenceQueueDepth", persistenceService.getQueueDepth());
+        server.put("mongoDocumentsWritten", mongoTemplate.getDocumentsWritten());
+        server.put("mongoBulkWrites", mongoTemplate.getBulkWrites());
+        server.put("meters", chatMeters());
+
+        for (StompSession session : sessions) {
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        }
+        stompClient.stop();
+
+        LoadReport.write(report.summary(profile, sendNanos, server),
+                Path.of(System.getProperty("loadtest.report", "target/loadtest-report.json")));
+
+        assertTrue(report.connected.sum() > 0, "no client could connect");
+    }
+
+    // Snapshot of the app's own chat.* meters, e.g. "chat.kafka.send{outcome=success}" -> {count, total_time, max}
+    private Map<String, Map<String, Double>> chatMeters() {
+        Map<String, Map<String, Double>> meters = new TreeMap<>();
+        for (Meter meter : meterRegistry.getMeters()) {
+            Meter.Id id = meter.getId();
+            if (!id.getName().startsWith("chat.") || id.getName().equals("chat.room.subscribers")) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(id.getName());
+            if (!id.getTags().isEmpty()) {
+                key.append(id.getTags().stream().map(t -> t.getKey() + "=" + t.getValue())
+                        .collect(Collectors.joining(",", "{", "}")));
+            }
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Measurement measurement : meter.measure()) {
+                values.put(measurement.getStatistic().getTagValueRepresentation(), measurement.getValue());
+            }
+            meters.put(key.toString(), values);
+        }
+        return meters;
+    }
+
+    private WebSocketClient transport(LoadProfile profile) {
+        StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+        return "sockjs".equals(profile.transport())
+                ? new SockJsClient(List.of(new WebSocketTransport(webSocketClient)))
+                : webSocketClient;
+    }
+
+    private StompSession[] connectAll(WebSocketStompClient stompClient, String url, LoadProfile profile,
+            int[] roomOf, LoadReport report) throws InterruptedException {
+        StompSession[] sessions = new StompSession[profile.clients()];
+        Semaphore inFlight = new Semaphore(profile.connectConcurrency());
+        CountDownLatch done = new CountDownLatch(profile.clients());
+        for (int i = 0; i < profile.clients(); i++) {
+            int client = i;
+            inFlight.acquire();
+            stompClient.connectAsync(url, new ClientHandler(roomName(roomOf[client]), report))
+                    .whenComplete((session, ex) -> {
+                        if (ex != null) {
+                            report.connectFailures.increment();
+                        } else {
+                            sessions[client] = session;
+                            report.connected.increment();
+                        }
+                        inFlight.release();
+                        done.countDown();
+                    });
+        }
+        done.await(5, TimeUnit.MINUTES);
+        return sessions;
+    }
+
+    // Sends on a 10 ms tick; each message goes out from a random connected client to its room
+    private long sendAtRate(LoadProfile profile, StompSession[] sessions, int[] roomOf, int[] members,
+            LoadReport report) throws InterruptedException {
+        List<Integer> live = new ArrayList<>();
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i] != null) {
+                live.add(i);
+            }
+        }
+        if (live.isEmpty()) {
+            return 1;
+        }
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        double perTick = profile.messagesPerSecond() / 100.0;
+        double[] quota = new double[1];
+        AtomicLong seq = new AtomicLong();
+        long start = System.nanoTime();
+        ticker.scheduleAtFixedRate(() -> {
+            quota[0] += perTick;
+            while (quota[0] >= 1) {
+                quota[0]--;
+                int client = live.get(ThreadLocalRandom.current().nextInt(live.size()));
+                String room = roomName(roomOf[client]);
+                try {
+                    sessions[client].send("/app/sendMessage/" + room, Map.of(
+                            "content", MARKER + seq.incrementAndGet() + "|" + System.nanoTime(),
+                            "sender", "load-" + client,
+                            "roomId", room));
+                    report.sent.increment();
+                    report.expected.add(members[roomOf[client]]);
+                } catch (Exception e) {
+                    report.sendFailures.increment();
+                }
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+        TimeUnit.SECONDS.sleep(profile.durationSeconds());
+        ticker.shutdown();
+        ticker.awaitTermination(5, TimeUnit.SECONDS);
+        return System.nanoTime() - start;
+    }
+
+    private static String roomName(int room) {
+        return "load-room-" + room;
+    }
+
+    private class ClientHandler extends StompSessionHandlerAdapter {
+        private final String room;
+        private final LoadReport report;
+        private long lastSeq; // frames of one session are handled one at a time
+
+        ClientHandler(String room, LoadReport report) {
+            this.room = room;
+            this.report = report;
+        }
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            session.subscribe("/topic/room/" + room, this);
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        // A frame is one message or an array of them (batched delivery)
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            try {
+                JsonNode frame = objectMapper.readTree((byte[]) payload);
+                if (frame.isArray()) {
+                    frame.forEach(this::record);
+                } else {
+                    record(frame);
+                }
+            } catch (Exception e) {
+                report.sessionErrors.increment();
+            }
+        }
+
+        private void record(JsonNode message) {
+            long seq = message.path("seq").asLong(0);
+            if (seq > 0) {
+                if (seq <= lastSeq) {
+                    report.outOfOrder.increment(); // room order broken somewhere between ingest and delivery
+                }
+                lastSeq = seq;
+            }
+            String content = message.path("content").asText("");
+            if (content.startsWith(MARKER)) {
+                report.recordDelivery(Long.parseLong(content.substring(content.lastIndexOf('|') + 1)));
+            }
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                byte[] payload, Throwable exception) {
+            report.sessionErrors.increment();
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            report.sessionErrors.increment();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.substring.chat.loadtest;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.substring.chat.entities.RoomSequence;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mongo stand-in for the load harness. Bulk writes (message persistence,
+ * presence, read receipts) are counted and take a fixed simulated latency
+ * instead of reaching a server, room sequence counters live in a map; anything else still goes to the configured
+ * client, which the harness points at an unreachable address with a short timeout.
+ */
+class InMemoryMongoTemplate extends MongoTemplate {
+
+    private final long writeLatencyMs;
+    private final LongAdder documentsWritten = new LongAdder();
+    private final LongAdder bulkWrites = new LongAdder();
+    private final Map<Object, Long> sequences = new ConcurrentHashMap<>();
+
+    InMemoryMongoTemplate(MongoDatabaseFactory factory, MongoConverter converter, long writeLatencyMs) {
+        super(factory, converter);
+        this.writeLatencyMs = writeLatencyMs;
+    }
+
+    @Override
+    public BulkOperations bulkOps(BulkOperations.BulkMode mode, String collectionName) {
+        return recordingBulk();
+    }
+
+    @Override
+    public BulkOperations bulkOps(BulkOperations.BulkMode mode, Class<?> entityClass) {
+        return recordingBulk();
+    }
+
+    @Override
+    public BulkOperations bulkOps(BulkOperations.BulkMode mode, Class<?> entityType, String collectionName) {
+        return recordingBulk();
+    }
+
+    // $inc on room_sequences, as RoomSequenceService issues it
+    @Override
+    public <T> T findAndModify(Query query, UpdateDefinition update, FindAndModifyOptions options,
+            Class<T> entityClass, String collectionName) {
+        if (entityClass != RoomSequence.class) {
+            return super.findAndModify(query, update, options, entityClass, collectionName);
+        }
+        Object roomId = query.getQueryObject().get("roomId");
+        long by = ((Number) update.getUpdateObject().get("$inc", Document.class).get("seq")).longValue();
+        long seq = sequences.merge(roomId, by, Long::sum);
+        return entityClass.cast(new RoomSequence(String.valueOf(roomId), seq));
+    }
+
+    long getDocumentsWritten() {
+        return documentsWritten.sum();
+    }
+
+    long getBulkWrites() {
+        return bulkWrites.sum();
+    }
+
+    // Every builder method returns the proxy itself; execute() applies the latency and counts
+    private BulkOperations recordingBulk() {
+        long[] pending = new long[1];
+        return (BulkOperations) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{BulkOperations.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("execute")) {
+                        if (writeLatencyMs > 0) {
+                            TimeUnit.MILLISECONDS.sleep(writeLatencyMs);
+                        }
+                        documentsWritten.add(pending[0]);
+                        bulkWrites.increment();
+                        return BulkWriteResult.unacknowledged();
+                    }
+                    pending[0] += args != null && args.length == 1 && args[0] instanceof Collection<?> c ? c.size() : 1;
+                    return proxy;
+                });
+    }
+}
@@ -0,0 +1,53 @@
+package com.substring.chat.loadtest;
+
+import java.util.Random;
+
+/**
+ * Load shape, read from system properties (-Dloadtest.clients=2000 ...).
+ * Clients are spread over rooms either evenly or zipf-like, where room k
+ * gets a share proportional to 1/(k+1)^skew, i.e. a few large rooms and a long tail.
+ */
+record LoadProfile(int clients, int rooms, String distribution, double skew, double messagesPerSecond,
+        int durationSeconds, int drainSeconds, String transport, int connectConcurrency, long mongoWriteLatencyMs) {
+
+    static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                Integer.getInteger("loadtest.clients", 200),
+                Integer.getInteger("loadtest.rooms", 20),
+                System.getProperty("loadtest.distribution", "uniform"),
+                Double.parseDouble(System.getProperty("loadtest.skew", "1.0")),
+                Double.parseDouble(System.getProperty("loadtest.rate", "200")),
+                Integer.getInteger("loadtest.durationSeconds", 30),
+                Integer.getInteger("loadtest.drainSeconds", 5),
+                System.getProperty("loadtest.transport", "sockjs"),
+                Integer.getInteger("loadtest.connectConcurrency", 50),
+                Long.getLong("loadtest.mongoWriteLatencyMs", 2));
+    }
+
+    // Room index for each client, deterministic for a given profile
+    int[] assignRooms() {
+        int[] assignment = new int[clients];
+        if (!"zipf".equals(distribution)) {
+            for (int i = 0; i < clients; i++) {
+                assignment[i] = i % rooms;
+            }
+            return assignment;
+        }
+        double[] cumulative = new double[rooms];
+        double total = 0;
+        for (int k = 0; k < rooms; k++) {
+            total += 1.0 / Math.pow(k + 1, skew);
+            cumulative[k] = total;
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < clients; i++) {
+            double pick = random.nextDouble() * total;
+            int room = 0;
+            while (cumulative[room] < pick) {
+                room++;
+            }
+            assignment[i] = room;
+        }
+        return assignment;
+    }
+}
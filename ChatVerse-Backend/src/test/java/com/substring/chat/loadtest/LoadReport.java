@@ -0,0 +1,72 @@
+package com.substring.chat.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and the send-to-receive latency histogram of one run. Latency is
+ * recorded per delivered frame in microseconds; "expected" is the number of
+ * room members at send time, so expected - delivered counts frames that never arrived.
+ */
+class LoadReport {
+
+    final Histogram latencyMicros = new ConcurrentHistogram(3);
+    final LongAdder connected = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder sessionErrors = new LongAdder();
+    final LongAdder sent = new LongAdder();
+    final LongAdder sendFailures = new LongAdder();
+    final LongAdder expected = new LongAdder();
+    final LongAdder delivered = new LongAdder();
+    final LongAdder outOfOrder = new LongAdder();
+
+    void recordDelivery(long sentNanos) {
+        latencyMicros.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentNanos)));
+        delivered.increment();
+    }
+
+    Map<String, Object> summary(LoadProfile profile, long sendNanos, Map<String, Object> server) {
+        double seconds = sendNanos / 1e9;
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", latencyMicros.getValueAtPercentile(50));
+        latency.put("p90", latencyMicros.getValueAtPercentile(90));
+        latency.put("p99", latencyMicros.getValueAtPercentile(99));
+        latency.put("p999", latencyMicros.getValueAtPercentile(99.9));
+        latency.put("max", latencyMicros.getMaxValue());
+        latency.put("mean", Math.round(latencyMicros.getMean()));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("profile", profile);
+        report.put("connected", connected.sum());
+        report.put("connectFailures", connectFailures.sum());
+        report.put("sessionErrors", sessionErrors.sum());
+        report.put("sent", sent.sum());
+        report.put("sendFailures", sendFailures.sum());
+        report.put("sendRatePerSec", Math.round(sent.sum() / seconds));
+        report.put("expectedFrames", expected.sum());
+        report.put("deliveredFrames", delivered.sum());
+        report.put("droppedFrames", Math.max(0, expected.sum() - delivered.sum()));
+        report.put("outOfOrderMessages", outOfOrder.sum());
+        report.put("deliveredPerSec", Math.round(delivered.sum() / seconds));
+        report.put("latencyMicros", latency);
+        report.put("server", server);
+        return report;
+    }
+
+    static void write(Map<String, Object> report, Path target) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        mapper.writeValue(target.toFile(), report);
+        System.out.println(mapper.writeValueAsString(report));
+    }
+}
@@ -0,0 +1,41 @@
+package com.substring.chat.payload;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.substring.chat.entities.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundMessageTest {
+
+	// Spring Boot's defaults; RoomBroadcaster and the REST controllers share that mapper
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.build();
+
+	@Test
+	void broadcastFieldsMatchTheHistoryPayload() throws Exception {
+		Message message = new Message();
+		message.setId("65f1c2a9e4b0a1b2c3d4e5f6");
+		message.setSeq(12L);
+		message.setSender("alice");
+		message.setContent("hello");
+		message.setTimeStamp(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000));
+		message.setRoomId("room-1");
+		message.setStatus(Message.MessageStatus.DELIVERED);
+
+		JsonNode live = objectMapper.readTree(objectMapper.writeValueAsBytes(OutboundMessage.from(message)));
+		JsonNode history = objectMapper.readTree(objectMapper.writeValueAsBytes(message));
+
+		assertThat(live.get("timeStamp").asText()).isEqualTo("2024-05-01T10:15:30.123");
+		live.fieldNames().forEachRemaining(field -> assertThat(live.get(field)).as(field).isEqualTo(history.get(field)));
+		assertThat(live.get("status").asText()).isEqualTo("DELIVERED");
+		assertThat(live.has("roomId")).isFalse();
+		assertThat(live.has("fileUrl")).isFalse();
+	}
+}
@@ -0,0 +1,182 @@
+package com.substring.chat.search;
+
+import com.substring.chat.entities.Message;
+import com.substring.chat.payload.SearchHit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+
+import static com.substring.chat.search.RoomIndexTest.id;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageSearchIndexTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	// the messages collection, in id order
+	private final List<Message> stored = new ArrayList<>();
+	// where each tail pass started, null for a full pass
+	private final List<ObjectId> tailedFrom = new ArrayList<>();
+	private MessageSearchIndex index;
+
+	@TempDir
+	Path dir;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		when(mongoTemplate.stream(any(Query.class), eq(Message.class))).thenAnswer(invocation -> {
+			Document id = (Document) invocation.getArgument(0, Query.class).getQueryObject().get("id");
+			ObjectId from = id != null ? (ObjectId) id.get("$gte") : null;
+			tailedFrom.add(from);
+			return List.copyOf(stored).stream().filter(m -> from == null || new ObjectId(m.getId()).compareTo(from) >= 0);
+		});
+		when(mongoTemplate.find(any(Query.class), eq(Message.class))).thenAnswer(invocation -> List.copyOf(stored));
+		index = index();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		index.stop();
+	}
+
+	@Test
+	void matchesDocsWithEveryWordAcrossSegmentsAndMemtable() {
+		for (int n = 1; n <= 60; n++) {
+			String content = (n % 2 == 0 ? "alpha " : "") + (n % 3 == 0 ? "beta " : "") + "filler";
+			store(n, "room-1", content);
+			if (n == 30) {
+				tailOnce();
+				index.flushAll();
+			}
+		}
+		tailOnce();
+
+		// every match reads "alpha beta filler": equal scores, so newest first
+		assertThat(ids(index.search("room-1", "Beta ALPHA", 100)))
+				.containsExactly(id(60), id(54), id(48), id(42), id(36), id(30), id(24), id(18), id(12), id(6));
+		assertThat(index.search("room-1", "alpha missing", 100)).isEmpty();
+		assertThat(index.search("room-2", "alpha", 100)).isEmpty();
+		assertThatThrownBy(() -> index.search("room-1", "a !", 10)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void ranksByScoreThenNewestFirst() {
+		store(1, "room-1", "hello hello");
+		store(2, "room-1", "hello world");
+		store(3, "room-1", "hello there");
+		tailOnce();
+		index.flushAll();
+		store(4, "room-1", "hello again");
+		store(5, "room-1", "goodbye everyone");
+		tailOnce();
+
+		// the oldest message says it twice; the rest tie and come newest first
+		assertThat(ids(index.search("room-1", "hello", 10))).containsExactly(id(1), id(4), id(3), id(2));
+		assertThat(ids(index.search("room-1", "hello", 3))).containsExactly(id(1), id(4), id(3));
+		List<SearchHit> top = index.search("room-1", "hello", 10);
+		assertThat(top.get(1).getScore()).isEqualTo(top.get(3).getScore());
+		assertThat(top.get(0).getScore()).isGreaterThan(top.get(1).getScore());
+	}
+
+	@Test
+	void checkpointStopsAtAFailedFlushAndTheTailRewinds() throws Exception {
+		store(1, "broken", "lost message");
+		store(2, "room-1", "kept message");
+		store(3, "room-1", "kept again");
+		Path blocker = dir.resolve(roomDir("broken"));
+		Files.writeString(blocker, "x"); // the room's segment directory cannot be created
+		tailOnce();
+
+		index.flushAll();
+		assertThat(Files.exists(dir.resolve("CHECKPOINT"))).isFalse();
+		assertThat(index.search("broken", "lost", 10)).isEmpty();
+
+		// the flushes now succeed, but the checkpoint must not pass the lost message
+		index.flushAll();
+		assertThat(checkpoint()).isEqualTo(id(1));
+
+		Files.delete(blocker);
+		tailOnce();
+		assertThat(tailedFrom.get(tailedFrom.size() - 1)).isLessThanOrEqualTo(new ObjectId(id(1)));
+		index.flushAll();
+		assertThat(checkpoint()).isEqualTo(id(3));
+		assertThat(ids(index.search("broken", "lost", 10))).containsExactly(id(1));
+		// kept messages were read twice, and are found once
+		assertThat(ids(index.search("room-1", "kept", 10))).containsExactly(id(3), id(2));
+
+		// a restart resumes at the checkpoint and queries the segments on disk
+		index.stop();
+		index = index();
+		assertThat(ids(index.search("room-1", "kept", 10))).containsExactly(id(3), id(2));
+		tailOnce();
+		assertThat(tailedFrom.get(tailedFrom.size() - 1))
+				.isEqualTo(ObjectId.getSmallestWithDate(new ObjectId(id(3)).getDate()));
+	}
+
+	private MessageSearchIndex index() throws IOException {
+		MessageSearchIndex index = new MessageSearchIndex(mongoTemplate, new SimpleMeterRegistry(), dir.toString(), 100);
+		ReflectionTestUtils.setField(index, "flushDocs", 5000);
+		ReflectionTestUtils.setField(index, "memtableBudget", 1L << 25);
+		ReflectionTestUtils.setField(index, "maxSegments", 8);
+		ReflectionTestUtils.setField(index, "maxOpenRooms", 10_000);
+		ReflectionTestUtils.setField(index, "rebuildOverlapMs", 0L);
+		ReflectionTestUtils.setField(index, "tailLagMs", 0L);
+		index.start();
+		return index;
+	}
+
+	// one pass of the search-tail thread, which also ends the startup catch-up
+	private void tailOnce() {
+		ReflectionTestUtils.setField(index, "running", true);
+		ReflectionTestUtils.invokeMethod(index, "tail");
+		ReflectionTestUtils.setField(index, "rebuilding", false);
+	}
+
+	private void store(int n, String roomId, String content) {
+		Message message = new Message();
+		message.setId(id(n));
+		message.setRoomId(roomId);
+		message.setSender("alice");
+		message.setContent(content);
+		stored.add(message);
+	}
+
+	private String checkpoint() throws IOException {
+		Properties checkpoint = new Properties();
+		try (Reader in = Files.newBufferedReader(dir.resolve("CHECKPOINT"), StandardCharsets.UTF_8)) {
+			checkpoint.load(in);
+		}
+		return checkpoint.getProperty("indexed");
+	}
+
+	private static String roomDir(String roomId) throws Exception {
+		byte[] hash = MessageDigest.getInstance("SHA-256").digest(roomId.getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(hash);
+	}
+
+	private static List<String> ids(List<SearchHit> hits) {
+		return hits.stream().map(hit -> hit.getMessage().getId()).toList();
+	}
+}
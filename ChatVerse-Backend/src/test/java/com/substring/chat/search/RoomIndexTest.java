@@ -0,0 +1,138 @@
+package com.substring.chat.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RoomIndexTest {
+
+	private static final List<String> TERMS = List.of("alpha", "beta", "gamma", "missing");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void segmentReadsLikeTheMemtableItWasWrittenFrom() throws IOException {
+		RoomIndex room = new RoomIndex(dir, true);
+		room.add(id(1), 1_000L, List.of("alpha", "beta", "alpha"));
+		room.add(id(2), 2_000L, List.of("beta"));
+		room.add(id(3), 3_000L, List.of("gamma", "beta"));
+		// the same message persisted twice is indexed once
+		assertThat(room.add(id(2), 2_000L, List.of("beta"))).isFalse();
+		IndexSource memtable = room.sources(TERMS).get(0);
+
+		room.flush();
+
+		assertThat(room.memtableDocs()).isZero();
+		assertThat(room.memtableBytes()).isZero();
+		assertThat(room.segmentCount()).isEqualTo(1);
+		List<IndexSource> sources = room.sources(TERMS);
+		assertThat(sources).hasSize(2);
+		assertThat(sources.get(0).docCount()).isZero();
+		assertSameContent(sources.get(1), memtable);
+		assertThat(postings(sources.get(1), "alpha")).containsExactly("0:2");
+		assertThat(postings(sources.get(1), "beta")).containsExactly("0:1", "1:1", "2:1");
+
+		// and reads the same once loaded from disk by another instance
+		assertSameContent(new RoomIndex(dir, false).sources(TERMS).get(1), memtable);
+	}
+
+	@Test
+	void mergeKeepsTheFirstOfRepeatedIds() throws IOException {
+		RoomIndex room = new RoomIndex(dir, true);
+		room.add(id(1), 1_000L, List.of("alpha", "beta"));
+		room.flush();
+		room.add(id(2), 2_000L, List.of("beta"));
+		room.add(id(1), 1_000L, List.of("alpha", "beta")); // re-read by the startup overlap
+		room.flush();
+		room.add(id(3), 3_000L, List.of("alpha", "gamma", "gamma"));
+		room.add(id(2), 2_000L, List.of("beta"));
+		room.flush();
+		List<Path> obsolete = new ArrayList<>();
+
+		room.merge(3, obsolete);
+		assertThat(room.segmentCount()).isEqualTo(3);
+		assertThat(obsolete).isEmpty();
+
+		room.merge(2, obsolete);
+		assertThat(room.segmentCount()).isEqualTo(1);
+		assertThat(obsolete).hasSize(3);
+		IndexSource merged = room.sources(TERMS).get(1);
+		assertThat(merged.docCount()).isEqualTo(3);
+		assertThat(merged.totalLength()).isEqualTo(6);
+		assertThat(List.of(merged.messageId(0), merged.messageId(1), merged.messageId(2)))
+				.containsExactly(id(1), id(2), id(3));
+		assertThat(merged.timeMillis(2)).isEqualTo(3_000L);
+		assertThat(merged.length(2)).isEqualTo(3);
+		assertThat(postings(merged, "alpha")).containsExactly("0:1", "2:1");
+		assertThat(postings(merged, "beta")).containsExactly("0:1", "1:1");
+		assertThat(postings(merged, "gamma")).containsExactly("2:2");
+		assertThat(merged.docFreq("beta")).isEqualTo(2);
+		assertThat(merged.postings("missing")).isNull();
+
+		// a reader opening the directory afresh sees only the merged segment once the old files are gone
+		for (Path path : obsolete) {
+			Files.delete(path);
+		}
+		try (Stream<Path> files = Files.list(dir)) {
+			assertThat(files).hasSize(1);
+		}
+		assertSameContent(new RoomIndex(dir, false).sources(TERMS).get(1), merged);
+	}
+
+	@Test
+	void failedFlushLeavesNoPartialSegment() throws IOException {
+		Path file = dir.resolve("not-a-directory");
+		Files.writeString(file, "x");
+		RoomIndex room = new RoomIndex(file, true);
+		room.add(id(1), 1_000L, List.of("alpha"));
+
+		assertThatThrownBy(room::flush).isInstanceOf(IOException.class);
+
+		// the memtable is dropped; the caller has its messages read again
+		assertThat(room.memtableDocs()).isZero();
+		assertThat(room.isIdle()).isTrue();
+		assertThat(Files.readString(file)).isEqualTo("x");
+	}
+
+	private static void assertSameContent(IndexSource actual, IndexSource expected) {
+		assertThat(actual.docCount()).isEqualTo(expected.docCount());
+		assertThat(actual.totalLength()).isEqualTo(expected.totalLength());
+		for (int doc = 0; doc < expected.docCount(); doc++) {
+			assertThat(actual.messageId(doc)).isEqualTo(expected.messageId(doc));
+			assertThat(actual.timeMillis(doc)).isEqualTo(expected.timeMillis(doc));
+			assertThat(actual.length(doc)).isEqualTo(expected.length(doc));
+		}
+		for (String term : TERMS) {
+			assertThat(actual.docFreq(term)).as(term).isEqualTo(expected.docFreq(term));
+			assertThat(postings(actual, term)).as(term).isEqualTo(postings(expected, term));
+		}
+	}
+
+	// "doc:freq" per posting, null when the term does not occur
+	static List<String> postings(IndexSource source, String term) {
+		IndexSource.Postings postings = source.postings(term);
+		if (postings == null) {
+			return null;
+		}
+		List<String> list = new ArrayList<>();
+		while (postings.next()) {
+			list.add(postings.doc() + ":" + postings.freq());
+		}
+		return list;
+	}
+
+	// ObjectId hex whose timestamp grows with n, so id order is time order
+	static String id(int n) {
+		return String.format("%08x%016x", 1_700_000_000 + n, n);
+	}
+}
@@ -0,0 +1,105 @@
+package com.substring.chat.services;
+
+import com.substring.chat.config.ClusterInstance;
+import com.substring.chat.entities.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentMessageBufferTest {
+
+	private static final String ROOM = "room-1";
+
+	private final RecentMessageBuffer buffer = new RecentMessageBuffer(10, 1 << 20, true,
+			new ClusterInstance("test", false), new SimpleMeterRegistry());
+
+	@Test
+	void servesLatestOnceTheRingHoldsEnough() {
+		for (long seq = 1; seq <= 5; seq++) {
+			buffer.add(message(seq));
+		}
+		assertThat(seqs(buffer.latest(ROOM, 3))).containsExactly(3L, 4L, 5L);
+		assertThat(buffer.latest(ROOM, 6)).as("fewer than asked and not seeded complete").isNull();
+	}
+
+	@Test
+	void seededRingServesAcrossASeqGap() {
+		// numbers 5-9 were lost on a restart; the store has the same gap
+		buffer.seed(ROOM, messages(1, 4, 10, 13), true);
+
+		assertThat(seqs(buffer.latest(ROOM, 6))).containsExactly(3L, 4L, 10L, 11L, 12L, 13L);
+		assertThat(seqs(buffer.since(ROOM, 2, 10))).containsExactly(3L, 4L, 10L, 11L, 12L, 13L);
+
+		// live messages after the seed carry on from there
+		buffer.add(message(14));
+		assertThat(seqs(buffer.latest(ROOM, 3))).containsExactly(12L, 13L, 14L);
+	}
+
+	@Test
+	void liveGapMissesUntilTheStoreVouchesForIt() {
+		buffer.seed(ROOM, messages(1, 5, 0, -1), false);
+		buffer.add(message(6));
+		buffer.add(message(8)); // 7 never arrived here
+
+		assertThat(buffer.latest(ROOM, 5)).isNull();
+		assertThat(buffer.since(ROOM, 5, 10)).isNull();
+		// the ring is kept, numbers before the gap still answer
+		assertThat(seqs(buffer.since(ROOM, 4, 1))).containsExactly(5L);
+
+		// reseeded from the store, which has 7 after all
+		buffer.seed(ROOM, messages(1, 8, 0, -1), false);
+		assertThat(seqs(buffer.latest(ROOM, 5))).containsExactly(4L, 5L, 6L, 7L, 8L);
+
+		// or the store has the same gap (7 was never written): now it is trusted
+		buffer.invalidate(ROOM);
+		List<Message> withGap = messages(1, 6, 8, 8);
+		buffer.seed(ROOM, withGap, false);
+		assertThat(seqs(buffer.latest(ROOM, 5))).containsExactly(3L, 4L, 5L, 6L, 8L);
+	}
+
+	@Test
+	void sinceNeedsTheRingToReachBackToTheClientsSeq() {
+		buffer.seed(ROOM, messages(20, 25, 0, -1), false);
+		assertThat(buffer.since(ROOM, 10, 10)).isNull();
+		assertThat(seqs(buffer.since(ROOM, 19, 10))).containsExactly(20L, 21L, 22L, 23L, 24L, 25L);
+		assertThat(seqs(buffer.since(ROOM, 25, 10))).isEmpty();
+	}
+
+	@Test
+	void latestNeedsAllMessagesToPassThisInstance() {
+		RecentMessageBuffer shared = new RecentMessageBuffer(10, 1 << 20, false,
+				new ClusterInstance("test", false), new SimpleMeterRegistry());
+		shared.seed(ROOM, messages(1, 5, 0, -1), true);
+		assertThat(shared.latest(ROOM, 3)).isNull();
+	}
+
+	// seqs first..last, then from..to (skipped when from > to), oldest first
+	private static List<Message> messages(long first, long last, long from, long to) {
+		List<Message> messages = new ArrayList<>();
+		for (long seq = first; seq <= last; seq++) {
+			messages.add(message(seq));
+		}
+		for (long seq = from; seq <= to; seq++) {
+			messages.add(message(seq));
+		}
+		return messages;
+	}
+
+	private static Message message(long seq) {
+		Message message = new Message();
+		message.setId(String.format("%024x", seq));
+		message.setRoomId(ROOM);
+		message.setContent("message " + seq);
+		message.setSeq(seq);
+		return message;
+	}
+
+	private static List<Long> seqs(List<Message> messages) {
+		assertThat(messages).isNotNull();
+		return messages.stream().map(Message::getSeq).toList();
+	}
+}
@@ -0,0 +1,121 @@
+package com.substring.chat.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoomExecutorTest {
+
+	private RoomExecutor executor;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		if (executor != null) {
+			executor.stop();
+		}
+	}
+
+	@Test
+	void runsEachRoomInSubmissionOrder() throws Exception {
+		executor = start(4, 10_000, 1000);
+		int rooms = 20;
+		int perRoom = 500;
+		Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+		CountDownLatch done = new CountDownLatch(rooms * perRoom);
+		ExecutorService submitters = Executors.newFixedThreadPool(rooms);
+		for (int r = 0; r < rooms; r++) {
+			String roomId = "room-" + r;
+			seen.put(roomId, new ArrayList<>()); // only the room's lane appends
+			submitters.execute(() -> {
+				for (int i = 0; i < perRoom; i++) {
+					int n = i;
+					executor.submit(roomId, () -> {
+						seen.get(roomId).add(n);
+						done.countDown();
+					});
+				}
+			});
+		}
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		submitters.shutdown();
+		seen.values().forEach(order -> assertThat(order).isSorted().hasSize(perRoom));
+	}
+
+	@Test
+	void rejectsWhenTheLaneStaysFull() throws Exception {
+		executor = start(1, 1, 20);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch running = new CountDownLatch(1);
+		assertThat(executor.submit("room-1", () -> {
+			running.countDown();
+			await(release);
+		})).isTrue();
+		assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(executor.submit("room-1", () -> { })).isTrue(); // fills the queue
+		assertThat(executor.submit("room-2", () -> { })).as("same lane, queue full").isFalse();
+		release.countDown();
+	}
+
+	@Test
+	void failingTaskDoesNotStallTheLane() throws Exception {
+		executor = start(1, 100, 1000);
+		CountDownLatch after = new CountDownLatch(1);
+		executor.submit("room-1", () -> {
+			throw new IllegalStateException("boom");
+		});
+		executor.submit("room-1", after::countDown);
+		assertThat(after.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void stopDrainsQueuedTasksAndRejectsNewOnes() throws Exception {
+		executor = start(1, 100, 1000);
+		AtomicInteger ran = new AtomicInteger();
+		for (int i = 0; i < 50; i++) {
+			executor.submit("room-1", () -> {
+				sleep(1);
+				ran.incrementAndGet();
+			});
+		}
+		executor.stop();
+		assertThat(ran).hasValue(50);
+		assertThat(executor.submit("room-1", ran::incrementAndGet)).isFalse();
+		executor = null;
+	}
+
+	private static RoomExecutor start(int lanes, int queueCapacity, long offerTimeoutMs) {
+		RoomExecutor executor = new RoomExecutor(lanes, queueCapacity, offerTimeoutMs, queueCapacity,
+				new MockEnvironment(), new SimpleMeterRegistry());
+		executor.start();
+		return executor;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
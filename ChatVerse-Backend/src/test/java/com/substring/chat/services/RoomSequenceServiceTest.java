@@ -0,0 +1,180 @@
+package com.substring.chat.services;
+
+import com.substring.chat.entities.RoomSequence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoomSequenceServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	// room -> counter in room_sequences
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	private final AtomicInteger reservations = new AtomicInteger();
+	private RoomSequenceService service;
+
+	@AfterEach
+	void tearDown() {
+		if (service != null) {
+			service.stop();
+		}
+	}
+
+	@Test
+	void blockSizeOneIsGapFree() {
+		service = service(1, false, 5000);
+		counterAnswers(null);
+
+		assertThat(take("room-1", 5)).containsExactly(1L, 2L, 3L, 4L, 5L);
+		assertThat(take("room-2", 2)).containsExactly(1L, 2L);
+		assertThat(reservations).hasValue(7);
+	}
+
+	@Test
+	void handsOutBlocksFromMemory() {
+		service = service(10, false, 5000);
+		counterAnswers(null);
+
+		List<Long> numbers = take("room-1", 25);
+		assertThat(numbers).isEqualTo(range(1, 25));
+		assertThat(reservations).hasValue(3);
+	}
+
+	@Test
+	void prefetchedBlocksAreHandedOverWithoutGaps() {
+		service = service(1, true, 5000);
+		counterAnswers(null);
+
+		assertThat(take("room-1", 200)).isEqualTo(range(1, 200));
+		// at most the one block reserved ahead is outstanding
+		assertThat(counters.get("room-1").get()).isBetween(200L, 201L);
+	}
+
+	@Test
+	void laneWaitsForAPrefetchInFlightInsteadOfReservingAgain() throws Exception {
+		service = service(1, true, 5000);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch prefetchStarted = new CountDownLatch(1);
+		counterAnswers(() -> {
+			if (Thread.currentThread().getName().equals("seq-prefetch")) {
+				prefetchStarted.countDown();
+				await(release);
+			}
+		});
+
+		assertThat(service.next("room-1")).isEqualTo(1L); // inline, then the prefetch of 2 starts and hangs
+		assertThat(prefetchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> service.next("room-1"));
+		Thread.sleep(100);
+		assertThat(second).isNotDone();
+		assertThat(reservations).hasValue(2);
+
+		release.countDown();
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(2L);
+		assertThat(take("room-1", 3)).containsExactly(3L, 4L, 5L);
+	}
+
+	@Test
+	void mongoDownPausesReservations() throws Exception {
+		service = service(1, false, 50);
+		AtomicBoolean down = new AtomicBoolean(true);
+		counterAnswers(() -> {
+			if (down.get()) {
+				throw new DataAccessResourceFailureException("no mongo");
+			}
+		});
+
+		assertThat(service.next("room-1")).isNull();
+		int attempts = reservations.get();
+		assertThat(service.next("room-1")).isNull();
+		assertThat(reservations).as("paused, Mongo is not asked again").hasValue(attempts);
+
+		down.set(false);
+		Thread.sleep(80);
+		assertThat(take("room-1", 3)).containsExactly(1L, 2L, 3L);
+	}
+
+	@Test
+	void failedPrefetchFallsBackToTheLaneAfterThePause() throws Exception {
+		service = service(1, true, 50);
+		AtomicBoolean prefetchFails = new AtomicBoolean(true);
+		counterAnswers(() -> {
+			if (Thread.currentThread().getName().equals("seq-prefetch") && prefetchFails.getAndSet(false)) {
+				throw new DataAccessResourceFailureException("no mongo");
+			}
+		});
+
+		assertThat(service.next("room-1")).isEqualTo(1L);
+		// the prefetch failed and reserved nothing: the lane gets no number while paused
+		assertThat(service.next("room-1")).isNull();
+		Thread.sleep(80);
+		assertThat(take("room-1", 3)).containsExactly(2L, 3L, 4L);
+	}
+
+	private RoomSequenceService service(int blockSize, boolean prefetch, long retryMs) {
+		return new RoomSequenceService(mongoTemplate, blockSize, retryMs, 100, prefetch, new SimpleMeterRegistry());
+	}
+
+	// $inc on the room's counter, after running before (which may block or throw)
+	private void counterAnswers(Runnable before) {
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+				eq(RoomSequence.class))).thenAnswer(invocation -> {
+					reservations.incrementAndGet();
+					if (before != null) {
+						before.run();
+					}
+					Query query = invocation.getArgument(0);
+					Update update = invocation.getArgument(1);
+					String roomId = query.getQueryObject().getString("roomId");
+					long inc = ((Number) update.getUpdateObject().get("$inc", Map.class).get("seq")).longValue();
+					return new RoomSequence(roomId, counters.computeIfAbsent(roomId, r -> new AtomicLong()).addAndGet(inc));
+				});
+	}
+
+	private List<Long> take(String roomId, int count) {
+		List<Long> numbers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			numbers.add(service.next(roomId));
+		}
+		return numbers;
+	}
+
+	private static List<Long> range(long first, long last) {
+		List<Long> numbers = new ArrayList<>();
+		for (long n = first; n <= last; n++) {
+			numbers.add(n);
+		}
+		return numbers;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.substring.chat.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TypingIndicatorServiceTest {
+
+	private static final String TOPIC = "/topic/room/room-1/typing";
+
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	private final TypingIndicatorService service = new TypingIndicatorService(messagingTemplate);
+
+	@Test
+	void publishesChangesOnly() {
+		ReflectionTestUtils.setField(service, "ttlMs", 60_000L);
+		service.update("room-1", "bob", true);
+		service.update("room-1", "alice", true);
+		service.publish();
+		verify(messagingTemplate).convertAndSend(TOPIC, Map.of("roomId", "room-1", "users", List.of("alice", "bob")));
+
+		clearInvocations(messagingTemplate);
+		service.update("room-1", "alice", true);
+		service.publish();
+		verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+	}
+
+	@Test
+	void typingAgainAfterTheRoomWentIdleIsPublished() {
+		ReflectionTestUtils.setField(service, "ttlMs", 60_000L);
+		service.update("room-1", "alice", true);
+		service.publish();
+		service.update("room-1", "alice", false);
+		service.publish(); // empty snapshot sent, room forgotten
+
+		clearInvocations(messagingTemplate);
+		service.update("room-1", "alice", true);
+		service.publish();
+		verify(messagingTemplate).convertAndSend(TOPIC, Map.of("roomId", "room-1", "users", List.of("alice")));
+	}
+
+	@Test
+	void expiredTypersAreDropped() {
+		ReflectionTestUtils.setField(service, "ttlMs", -1L);
+		service.update("room-1", "alice", true);
+		service.publish();
+		verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+	}
+}
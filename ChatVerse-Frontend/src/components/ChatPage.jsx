@@ -6,11 +6,31 @@ import SockJS from "sockjs-client";
 import { Client } from "@stomp/stompjs";
 import toast from "react-hot-toast";
 import { baseURL } from "../config/AxiosHelper";
-import { getMessagess, getRoomsApi, uploadFileApi } from "../services/RoomService";
+import { getMessagesSinceApi, getMessagess, getRoomsApi, uploadFileApi } from "../services/RoomService";
 import { timeAgo } from "../config/Helper";
 import VideoCall from "./VideoCall";
 import { useAuth } from "../context/AuthContext";
 
+// Adds messages not shown yet; sequenced ones go in seq order, the rest at the end
+const mergeMessages = (prev, incoming) => {
+  const fresh = incoming.filter(newMessage =>
+    !prev.some(m => m.id === newMessage.id && m.id !== undefined && m.id !== null));
+  if (fresh.length === 0) return prev;
+  const merged = [...prev];
+  fresh.forEach((newMessage) => {
+    const at = newMessage.seq == null ? -1 : merged.findIndex(m => m.seq != null && m.seq > newMessage.seq);
+    if (at < 0) merged.push(newMessage);
+    else merged.splice(at, 0, newMessage);
+  });
+  return merged;
+};
+
+const highestSeq = (list, from = null) =>
+  list.reduce((max, m) => (m.seq != null && (max == null || m.seq > max) ? m.seq : max), from);
+
+// Rooms are listed a page at a time; the search box is a roomId prefix the server matches
+const ROOM_PAGE_SIZE = 50;
+
 const ChatPage = () => {
   const {
     roomId,
@@ -34,9 +54,14 @@ const ChatPage = () => {
   const [signalQueue, setSignalQueue] = useState([]);
   const [rooms, setRooms] = useState([]);
   const [searchTerm, setSearchTerm] = useState("");
+  const [roomsPage, setRoomsPage] = useState(0);
+  const [hasMoreRooms, setHasMoreRooms] = useState(false);
+  const loadingRoomsRef = useRef(false);
   const [outgoingCall, setOutgoingCall] = useState(null);
   const [isInitiator, setIsInitiator] = useState(false);
   const fileInputRef = useRef(null);
+  // Highest message seq received in this room; reconnects only fetch what came after it
+  const lastSeqRef = useRef(null);
 
   // States for real-time features
   const [typingUser, setTypingUser] = useState(null);
@@ -49,26 +74,34 @@ const ChatPage = () => {
     }
   }, [connected, navigate]);
 
-  // Load rooms
+  // Load rooms: the first page for the current search, further pages as the list scrolls
   useEffect(() => {
-    async function fetchRooms() {
+    if (!connected) return;
+    let cancelled = false;
+    const timer = setTimeout(async () => {
       try {
-        const data = await getRoomsApi();
+        const data = await getRoomsApi(searchTerm.trim(), 0, ROOM_PAGE_SIZE);
+        if (cancelled) return;
         setRooms(data);
+        setRoomsPage(0);
+        setHasMoreRooms(data.length === ROOM_PAGE_SIZE);
       } catch (error) {
         console.error("Failed to fetch rooms", error);
       }
-    }
-    if (connected) {
-      fetchRooms();
-    }
-  }, [connected, roomId]);
+    }, searchTerm ? 250 : 0);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [connected, roomId, searchTerm]);
 
   // Load old messages
   useEffect(() => {
     async function loadMessages() {
+      lastSeqRef.current = null;
       try {
         const messagesList = await getMessagess(roomId);
+        lastSeqRef.current = highestSeq(messagesList, lastSeqRef.current);
         setMessages(messagesList);
       } catch (error) {
         console.error("Failed to load messages", error);
@@ -104,41 +137,67 @@ const ChatPage = () => {
       }
     });
 
+    // Pages through everything after fromSeq, e.g. what was missed while disconnected
+    const catchUp = async (fromSeq) => {
+      try {
+        let seq = fromSeq;
+        let hasMore = true;
+        while (hasMore) {
+          const delta = await getMessagesSinceApi(roomId, seq);
+          setMessages((prev) => mergeMessages(prev, delta.messages));
+          lastSeqRef.current = highestSeq(delta.messages, lastSeqRef.current);
+          seq = delta.lastSeq;
+          hasMore = delta.hasMore;
+        }
+      } catch (error) {
+        console.error("Failed to catch up on messages", error);
+      }
+    };
+
     client.onConnect = () => {
       setStompClient(client);
+      if (lastSeqRef.current != null) {
+        catchUp(lastSeqRef.current);
+      }
 
       // Sub 1: Messages
       client.subscribe(`/topic/room/${roomId}`, (message) => {
-        const newMessage = JSON.parse(message.body);
-        setMessages((prev) => {
-          const exists = prev.some(m => m.id === newMessage.id && m.id !== undefined && m.id !== null);
-          if (exists) return prev;
-          return [...prev, newMessage];
+        // The server may batch several messages of the room into one frame
+        const payload = JSON.parse(message.body);
+        const incoming = Array.isArray(payload) ? payload : [payload];
+        setMessages((prev) => mergeMessages(prev, incoming));
+
+        // A jump in seq means frames were missed (e.g. during a reconnect)
+        let gapFrom = null;
+        incoming.forEach((newMessage) => {
+          if (newMessage.seq == null) return;
+          const last = lastSeqRef.current;
+          if (last != null && newMessage.seq > last + 1 && gapFrom === null) gapFrom = last;
+          if (last == null || newMessage.seq > last) lastSeqRef.current = newMessage.seq;
+        });
+        if (gapFrom !== null) catchUp(gapFrom);
+
+        incoming.forEach((newMessage) => {
+          // If message is not from me, send read receipt
+          if (newMessage.sender !== currentUser) {
+            client.publish({
+              destination: `/app/read/${roomId}`,
+              body: JSON.stringify({
+                messageId: newMessage.id,
+                reader: currentUser,
+                status: 'READ'
+              })
+            });
+          }
         });
-
-        // If message is not from me, send read receipt
-        if (newMessage.sender !== currentUser) {
-          client.publish({
-            destination: `/app/read/${roomId}`,
-            body: JSON.stringify({
-              messageId: newMessage.id,
-              reader: currentUser,
-              status: 'READ'
-            })
-          });
-        }
       });
 
       // Sub 2: Typing Indicators
+      // Server publishes the full set of current typers whenever it changes
       client.subscribe(`/topic/room/${roomId}/typing`, (payload) => {
         const data = JSON.parse(payload.body);
-        if (data.username !== currentUser) {
-          if (data.typing) {
-            setTypingUser(data.username);
-          } else {
-            setTypingUser(null);
-          }
-        }
+        const others = (data.users || []).filter(u => u !== currentUser);
+        setTypingUser(others.length > 0 ? others[0] : null);
       });
 
       // Sub 3: Room Status Updates
@@ -148,12 +207,16 @@ const ChatPage = () => {
       });
 
       // Sub 4: Global Presence Updates
+      // Presence changes arrive in batches: [{ email, online, lastSeen }, ...]
       client.subscribe(`/topic/presence`, (payload) => {
-        const data = JSON.parse(payload.body);
-        setOnlineUsers(prev => ({
-          ...prev,
-          [data.email]: data.online
-        }));
+        const changes = JSON.parse(payload.body);
+        setOnlineUsers(prev => {
+          const next = { ...prev };
+          changes.forEach(change => {
+            next[change.email] = change.online;
+          });
+          return next;
+        });
       });
 
       // Sub 5: Incoming Call Signaling
@@ -259,9 +322,28 @@ const ChatPage = () => {
     setRoomId(id);
   };
 
-  const filteredRooms = rooms.filter(r =>
-    r.roomId.toLowerCase().includes(searchTerm.toLowerCase())
-  );
+  const loadMoreRooms = async () => {
+    if (loadingRoomsRef.current || !hasMoreRooms) return;
+    loadingRoomsRef.current = true;
+    try {
+      const next = roomsPage + 1;
+      const data = await getRoomsApi(searchTerm.trim(), next, ROOM_PAGE_SIZE);
+      setRooms((prev) => [...prev, ...data]);
+      setRoomsPage(next);
+      setHasMoreRooms(data.length === ROOM_PAGE_SIZE);
+    } catch (error) {
+      console.error("Failed to fetch rooms", error);
+    } finally {
+      loadingRoomsRef.current = false;
+    }
+  };
+
+  const handleRoomListScroll = (e) => {
+    const el = e.currentTarget;
+    if (el.scrollHeight - el.scrollTop - el.clientHeight < 80) {
+      loadMoreRooms();
+    }
+  };
 
   const startCalling = (type) => {
     if (!stompClient || !stompClient.connected) {
@@ -428,8 +510,8 @@ const ChatPage = () => {
           </div>
         </div>
 
-        <div className="flex-1 overflow-y-auto custom-scrollbar px-2 space-y-1">
-          {filteredRooms.map((room) => (
+        <div onScroll={handleRoomListScroll} className="flex-1 overflow-y-auto custom-scrollbar px-2 space-y-1">
+          {rooms.map((room) => (
             <div
               key={room.id || room.roomId}
               onClick={() => switchRoom(room.roomId)}
@@ -514,7 +596,19 @@ const ChatPage = () => {
                   {message.fileUrl ? (
                     <div className="mb-2">
                       {message.fileType?.startsWith("image/") ? (
-                        <img src={`${baseURL}${message.fileUrl}`} className="max-w-full rounded-xl shadow-2xl" alt="" />
+                        // preview may still be generating: fall back to the original
+                        <a href={`${baseURL}${message.fileUrl}`} target="_blank" rel="noreferrer">
+                          <img
+                            src={`${baseURL}${message.thumbnailUrl || message.fileUrl}`}
+                            onError={(e) => {
+                              const original = `${baseURL}${message.fileUrl}`;
+                              if (e.currentTarget.src !== original) e.currentTarget.src = original;
+                            }}
+                            loading="lazy"
+                            className="max-w-full rounded-xl shadow-2xl"
+                            alt=""
+                          />
+                        </a>
                       ) : (
                         <a href={`${baseURL}${message.fileUrl}`} className="flex items-center gap-3 bg-black/20 p-4 rounded-xl hover:bg-black/30 transition shadow-inner">
                           <MdAttachFile className="rotate-45" size={24} />
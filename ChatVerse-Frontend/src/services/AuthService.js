@@ -10,7 +10,10 @@ export const registerApi = async (userData) => {
   return response.data;
 };
 
-export const getAllUsersApi = async () => {
-  const response = await httpClient.get("/api/auth/users");
+// One page of users; q is an email/name prefix matched by the server
+export const getAllUsersApi = async (q, page = 0, size = 50) => {
+  const response = await httpClient.get("/api/auth/users", {
+    params: { q: q || undefined, page, size },
+  });
   return response.data;
 };
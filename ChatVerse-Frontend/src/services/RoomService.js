@@ -10,8 +10,11 @@ export const joinChatApi = async (roomId) => {
   return response.data;
 };
 
-export const getRoomsApi = async () => {
-  const response = await httpClient.get(`/api/v1/rooms`);
+// One page of rooms; q is a roomId prefix matched by the server
+export const getRoomsApi = async (q, page = 0, size = 50) => {
+  const response = await httpClient.get(`/api/v1/rooms`, {
+    params: { q: q || undefined, page, size },
+  });
   return response.data;
 };
 
@@ -22,7 +25,22 @@ export const getMessagess = async (roomId, limit = 100) => {
   return response.data;
 };
 
+// Reconnect catch-up: messages after the last seq seen, continue with lastSeq while hasMore
+export const getMessagesSinceApi = async (roomId, seq, limit = 200) => {
+  const response = await httpClient.get(`/api/v1/rooms/${roomId}/messages/since`, {
+    params: { seq, limit },
+  });
+  return response.data;
+};
+
+// Files above this size go through the resumable chunked upload API
+const CHUNKED_UPLOAD_THRESHOLD = 20 * 1024 * 1024;
+const PARALLEL_CHUNKS = 3;
+
 export const uploadFileApi = async (file) => {
+  if (file.size > CHUNKED_UPLOAD_THRESHOLD) {
+    return uploadFileChunkedApi(file);
+  }
   const formData = new FormData();
   formData.append("file", file);
   const response = await httpClient.post(`/api/v1/files/upload`, formData, {
@@ -31,4 +49,48 @@ export const uploadFileApi = async (file) => {
     },
   });
   return response.data;
-};
\ No newline at end of file
+};
+
+// init -> PUT chunks (a few in parallel, skipping ones the server already has) -> complete
+export const uploadFileChunkedApi = async (file, uploadId = null) => {
+  let session;
+  if (uploadId) {
+    session = (await httpClient.get(`/api/v1/files/uploads/${uploadId}`)).data;
+  } else {
+    session = (await httpClient.post(`/api/v1/files/uploads`, {
+      fileName: file.name,
+      fileType: file.type,
+      size: file.size,
+    })).data;
+  }
+
+  const received = new Set(session.receivedChunks || []);
+  const pending = [];
+  for (let index = 0; index < session.chunkCount; index++) {
+    if (!received.has(index)) pending.push(index);
+  }
+
+  const worker = async () => {
+    while (pending.length > 0) {
+      const index = pending.shift();
+      const offset = index * session.chunkSize;
+      await httpClient.put(
+        `/api/v1/files/uploads/${session.id}?offset=${offset}`,
+        file.slice(offset, offset + session.chunkSize),
+        { headers: { "Content-Type": "application/octet-stream" } }
+      );
+    }
+  };
+  await Promise.all(Array.from({ length: PARALLEL_CHUNKS }, worker));
+
+  const response = await httpClient.post(`/api/v1/files/uploads/${session.id}/complete`);
+  return response.data;
+};
+
+// Cursor based history: pass the previous page's nextCursor as `before` to scroll back
+export const getMessagePageApi = async (roomId, { before, after, limit = 50 } = {}) => {
+  const response = await httpClient.get(`/api/v1/rooms/${roomId}/messages/page`, {
+    params: { before, after, limit },
+  });
+  return response.data;
+};